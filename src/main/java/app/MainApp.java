@@ -5,8 +5,14 @@ import app.model.Candidature;
 import app.model.DocumentFile;
 import app.model.StatutCandidature;
 import app.service.CandidatureService;
+import app.service.CandidatureMatcher;
+import app.service.FacetIndex;
 import app.service.FileSystemService;
-import app.service.PdfImportService;
+import app.service.FullTextIndex;
+import app.service.InboxWatcher;
+import app.service.MailImportService;
+import app.service.PdfBatchImportService;
+import app.service.ThumbnailCache;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
@@ -24,10 +30,9 @@ import javafx.scene.Scene;
 import javafx.scene.chart.PieChart;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.TextFieldTableCell;
+import javafx.scene.input.TransferMode;
 import javafx.scene.layout.*;
 import javafx.stage.*;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
 
 import java.io.File;
 import java.io.IOException;
@@ -37,11 +42,18 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 public class MainApp extends Application {
 
@@ -49,6 +61,9 @@ public class MainApp extends Application {
     private MainController controller;
     private PdfViewerPane pdfViewerPane;
 
+    // Correspondance sur entreprise, poste ou notes : devant les seules correspondances dans les PDF
+    private static final double METADATA_SCORE = 100.0;
+
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
     private final Comparator<Candidature> candidatureComparator =
             Comparator.comparing(
@@ -56,13 +71,37 @@ public class MainApp extends Application {
                     Comparator.nullsLast(Comparator.reverseOrder())
             );
 
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d MMMM yyyy 'à' HH:mm", Locale.FRENCH );
-    private final Pattern dateTimePattern = Pattern.compile(
-            "(\\d{1,2}\\s(?:janvier|février|mars|avril|mai|juin|juillet|août|septembre|octobre|novembre|décembre)\\s\\d{4}\\sà\\s\\d{1,2}:\\d{2})", Pattern.CASE_INSENSITIVE );
 
     private FilteredList<Candidature> filteredCandidatures;
     private SortedList<Candidature> sortedCandidatures;
 
+    // Pertinence de chaque candidature pour la recherche en cours (vide sans recherche)
+    private final Map<Candidature, Double> searchScores = new IdentityHashMap<>();
+    private TableColumn<Candidature, Number> colScore;
+    private Runnable refreshFilters = () -> {};
+    private String lastSearch;
+    private long lastSearchRevision;
+
+    // Import de PDF par lot : un seul à la fois, suivi dans un bandeau en bas de la fenêtre
+    private PdfBatchImportService batchImport;
+    private MailImportService mailImport;
+    private final ProgressBar importProgress = new ProgressBar(0);
+    private final Label importLabel = new Label();
+    private final Button cancelImportButton = new Button("Annuler");
+    private final HBox importPanel = new HBox(10, importProgress, importLabel, cancelImportButton);
+    private Task<?> currentImport;
+    private volatile boolean importCancelRequested;
+    // Réponse donnée pour tous les doublons de l'import en cours (null : demander)
+    private volatile PdfBatchImportService.DuplicateAction duplicateChoice;
+
+    // Boîte de réception : PDF déposés dans le dossier surveillé, en attente d'une candidature
+    private InboxWatcher inbox;
+    private List<InboxWatcher.Item> inboxItems = List.of();
+    private final Label inboxLabel = new Label();
+    private final Button inboxImportButton = new Button("Importer dans la candidature sélectionnée");
+    private final Button inboxRouteButton = new Button("Classer automatiquement");
+    private final HBox inboxPanel = new HBox(10, inboxLabel, inboxRouteButton, inboxImportButton);
+
 
     @Override
     public void start(Stage stage) {
@@ -128,6 +167,21 @@ public class MainApp extends Application {
 
             menu.getItems().addAll(edit, delete);
 
+            /* ===== Glisser-déposer de PDF / dossiers sur la candidature ===== */
+            row.setOnDragOver(e -> {
+                if (!row.isEmpty() && e.getDragboard().hasFiles()) e.acceptTransferModes(TransferMode.COPY);
+                e.consume();
+            });
+            row.setOnDragDropped(e -> {
+                boolean accepted = !row.isEmpty() && e.getDragboard().hasFiles();
+                if (accepted) {
+                    table.getSelectionModel().select(row.getItem());
+                    importFiles(stage, row.getItem(), e.getDragboard().getFiles());
+                }
+                e.setDropCompleted(accepted);
+                e.consume();
+            });
+
             row.contextMenuProperty().bind(
                     Bindings.when(row.emptyProperty())
                             .then((ContextMenu) null)
@@ -163,7 +217,22 @@ public class MainApp extends Application {
                 new SimpleStringProperty(c.getValue().getStatut().getLabel()));
         colStatut.setPrefWidth(60);
 
-        table.getColumns().addAll(colIndex, colDate, colEntreprise, colPoste, colStatut);
+        // Pertinence : visible et prioritaire dans le tri uniquement pendant une recherche
+        colScore = new TableColumn<>("Pertinence");
+        colScore.setCellValueFactory(c ->
+                new ReadOnlyObjectWrapper<>(searchScores.getOrDefault(c.getValue(), 0.0)));
+        colScore.setCellFactory(col -> new TableCell<>() {
+            @Override
+            protected void updateItem(Number item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : String.format(Locale.FRENCH, "%.1f", item.doubleValue()));
+            }
+        });
+        colScore.setSortType(TableColumn.SortType.DESCENDING);
+        colScore.setPrefWidth(50);
+        colScore.setVisible(false);
+
+        table.getColumns().addAll(colIndex, colDate, colEntreprise, colPoste, colStatut, colScore);
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
 
         colStatut.setCellFactory(col -> new TableCell<>() {
@@ -195,7 +264,7 @@ public class MainApp extends Application {
         colNotes.setOnEditCommit(event -> {
             Candidature c = event.getRowValue();
             c.setNotes(event.getNewValue());
-            controller.save();
+            controller.update(c);
         });
 
 // Colonne Date de relance
@@ -225,6 +294,8 @@ public class MainApp extends Application {
 
 
         controller = new MainController(table);
+        batchImport = new PdfBatchImportService(controller.getDocumentHashes());
+        mailImport = new MailImportService(controller.getDocumentHashes());
 
         filteredCandidatures =
                 new FilteredList<>(controller.getCandidatures(), c -> true);
@@ -242,15 +313,30 @@ public class MainApp extends Application {
         pdfViewerPane = new PdfViewerPane(FXCollections.observableArrayList(), controller);
 
         MenuItem importPdfDoc = new MenuItem("Importer PDF");
+        MenuItem importFolderDoc = new MenuItem("Importer un dossier");
         MenuItem changeDate = new MenuItem("Modifier date");
         MenuItem deleteDoc = new MenuItem("Supprimer");
 
-        ContextMenu docMenu = new ContextMenu(importPdfDoc, changeDate, deleteDoc);
+        ContextMenu docMenu = new ContextMenu(importPdfDoc, importFolderDoc, changeDate, deleteDoc);
 
         // Menu contextuel PDF
         importPdfDoc.setOnAction(e -> {
             importPdf(stage);  // On réutilise ta méthode existante
         });
+        importFolderDoc.setOnAction(e -> importFolder(stage));
+
+        // PDF déposés sur la visionneuse : ajoutés à la candidature sélectionnée, classés sinon
+        pdfViewerPane.setOnDragOver(e -> {
+            if (e.getDragboard().hasFiles()) e.acceptTransferModes(TransferMode.COPY);
+            e.consume();
+        });
+        pdfViewerPane.setOnDragDropped(e -> {
+            Candidature c = table.getSelectionModel().getSelectedItem();
+            boolean accepted = e.getDragboard().hasFiles();
+            if (accepted) importFiles(stage, c, e.getDragboard().getFiles());
+            e.setDropCompleted(accepted);
+            e.consume();
+        });
 
 //        changeType.setOnAction(e -> {
 //            DocumentFile doc = pdfViewerPane.getPdfListView().getSelectionModel().getSelectedItem();
@@ -280,11 +366,18 @@ public class MainApp extends Application {
             Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Supprimer ce document ?");
             confirm.showAndWait().ifPresent(btn -> {
                 if (btn == ButtonType.OK) {
+                    pdfViewerPane.forget(doc.getFichier());
                     try { Files.deleteIfExists(doc.getFichier()); } catch (IOException ignored) {}
                     Candidature cand = table.getSelectionModel().getSelectedItem();
-                    if (cand != null) cand.getDocuments().remove(doc);
+                    if (cand != null) {
+                        controller.getFullText().removeDocument(cand, doc);
+                        controller.getDocumentHashes().remove(cand, doc);
+                        cand.retirerDocument(doc);
+                        controller.update(cand);
+                    } else {
+                        controller.save();
+                    }
                     pdfViewerPane.getPdfListView().getItems().remove(doc);
-                    controller.save();
                     table.refresh();
                 }
             });
@@ -367,38 +460,55 @@ public class MainApp extends Application {
         BorderPane root = new BorderPane();
         root.setCenter(splitPane);
 
+        /* ========================= IMPORT EN COURS ========================= */
+        cancelImportButton.setOnAction(e -> {
+            // Arrêt après le fichier en cours : les fichiers déjà déplacés sont bien enregistrés
+            importCancelRequested = true;
+            cancelImportButton.setDisable(true);
+        });
+        importProgress.setPrefWidth(250);
+        importPanel.setAlignment(Pos.CENTER_LEFT);
+        importPanel.setPadding(new Insets(5));
+        importPanel.setVisible(false);
+        importPanel.managedProperty().bind(importPanel.visibleProperty());
+
+        /* ========================= BOÎTE DE RÉCEPTION ========================= */
+        inboxImportButton.setOnAction(e -> {
+            Candidature c = table.getSelectionModel().getSelectedItem();
+            if (c == null) {
+                new Alert(Alert.AlertType.INFORMATION, "Sélectionnez d'abord une candidature.").showAndWait();
+                return;
+            }
+            importFiles(stage, c, inboxItems.stream().map(item -> item.file().toFile()).toList());
+        });
+        inboxRouteButton.setTooltip(new Tooltip("Chaque PDF va à la candidature dont il cite l'entreprise"));
+        inboxRouteButton.setOnAction(e ->
+                importFiles(stage, null, inboxItems.stream().map(item -> item.file().toFile()).toList()));
+        inboxPanel.setAlignment(Pos.CENTER_LEFT);
+        inboxPanel.setPadding(new Insets(5));
+        inboxPanel.setVisible(false);
+        inboxPanel.managedProperty().bind(inboxPanel.visibleProperty());
+        root.setBottom(new VBox(inboxPanel, importPanel));
+
+        // Surveillance sur ses propres threads : l'interface n'est prévenue qu'une fois par lot
+        inbox = new InboxWatcher(FileSystemService.getInbox(), () -> Platform.runLater(this::refreshInbox));
+        inbox.start();
+
 
 
         /* ========================= TOOLBAR ========================= */
 // 1️⃣ Déclaration UI
         TextField searchField = new TextField();
-        searchField.setPromptText("Rechercher entreprise ou poste...");
+        searchField.setPromptText("Rechercher (entreprise, poste, notes, PDF)...");
 
         searchField.setPrefWidth(250);
 
-        searchField.textProperty().addListener((obs, old, text) -> {
-            filteredCandidatures.setPredicate(c -> {
-                if (text == null || text.isBlank()) return true;
-                String lower = text.toLowerCase();
-                return c.getEntreprise().toLowerCase().contains(lower)
-                        || c.getPoste().toLowerCase().contains(lower);
-            });
-        });
-
         ChoiceBox<StatutCandidature> statutFilter =
                 new ChoiceBox<>(FXCollections.observableArrayList(StatutCandidature.values()));
         statutFilter.setPrefWidth(140);
         statutFilter.setValue(StatutCandidature.TOUTES);
 
 
-        statutFilter.getSelectionModel().selectedItemProperty().addListener((obs, old, selected) -> {
-            filteredCandidatures.setPredicate(c -> {
-                if (selected == null || selected == StatutCandidature.TOUTES) {
-                    return true;
-                }
-                return c.getStatut() == selected;
-            });
-        });
 
 
         Button addCandidature = new Button("Nouvelle candidature");
@@ -409,6 +519,23 @@ public class MainApp extends Application {
 
         rapportStatBtn.setTooltip(new Tooltip("Voir les statistiques des candidatures"));
 
+        // Pièces jointes PDF d'une boîte mbox ou de fichiers .eml, classées d'après le mail
+        MenuItem importMailFiles = new MenuItem("Fichiers mbox / eml…");
+        importMailFiles.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.getExtensionFilters().addAll(
+                    new FileChooser.ExtensionFilter("Mails", "*.mbox", "*.eml"),
+                    new FileChooser.ExtensionFilter("Tous les fichiers", "*.*"));
+            List<File> files = chooser.showOpenMultipleDialog(stage);
+            if (files != null && !files.isEmpty()) importMails(stage, files.stream().map(File::toPath).toList());
+        });
+        MenuItem importMailFolder = new MenuItem("Dossier de fichiers eml…");
+        importMailFolder.setOnAction(e -> {
+            File dir = new DirectoryChooser().showDialog(stage);
+            if (dir != null) importMails(stage, List.of(dir.toPath()));
+        });
+        MenuButton importMailsBtn = new MenuButton("Importer des mails", null, importMailFiles, importMailFolder);
+
 
 
 
@@ -425,6 +552,7 @@ public class MainApp extends Application {
         root.setTop(new ToolBar(
                 addCandidature,
                 rapportStatBtn,
+                importMailsBtn,
                 new Separator(),
                 new Label("Filtre :"),
                 statutFilter,
@@ -450,6 +578,15 @@ public class MainApp extends Application {
         responseFilter.selectedProperty().addListener((obs, old, val) ->
                 updatePredicate(filteredCandidatures, searchField, statutFilter, moisFilter, pdfFilter, responseFilter));
 
+        // Index plein texte enrichi en arrière-plan : on relance la recherche en cours
+        refreshFilters = () ->
+                updatePredicate(filteredCandidatures, searchField, statutFilter, moisFilter, pdfFilter, responseFilter);
+        controller.getFullText().setOnIndexChanged(() -> Platform.runLater(() -> {
+            if (searchField.getText().isBlank()) return;
+            lastSearch = null;
+            refreshFilters.run();
+        }));
+
 
         /* ========================= SELECTION ========================= */
         table.getSelectionModel().selectedItemProperty().addListener((obs, old, c) -> {
@@ -458,6 +595,13 @@ public class MainApp extends Application {
                 return;
             }
 
+            // Lignes voisines : leur premier document sera préchargé
+            int row = table.getSelectionModel().getSelectedIndex();
+            List<Candidature> neighbours = new ArrayList<>();
+            if (row + 1 < table.getItems().size()) neighbours.add(table.getItems().get(row + 1));
+            if (row > 0) neighbours.add(table.getItems().get(row - 1));
+            pdfViewerPane.setNeighbours(neighbours);
+
             // On garde la même ObservableList pour que le scroll ne soit pas bloqué
             var pdfList = pdfViewerPane.getPdfListView().getItems();
             pdfList.setAll(c.getDocuments());
@@ -496,11 +640,48 @@ public class MainApp extends Application {
 //            c.setDateEnvoi(LocalDate.now().minusDays(i));
 //            table.getItems().add(c);
 //        }
+        // Sauvegarde en échec : prévenir avant de quitter plutôt que perdre les modifications en silence
+        stage.setOnCloseRequest(e -> {
+            if (confirmUnsavedExit(stage)) return;
+            e.consume();
+        });
         stage.show();
         Platform.runLater(() -> centerStage(stage));
 
     }
 
+    private boolean confirmUnsavedExit(Stage stage) {
+        boolean saved;
+        try {
+            saved = controller.flush(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+        if (saved) return true;
+
+        Throwable error = controller.getSaveWriter().getLastError();
+        ButtonType quit = new ButtonType("Quitter quand même", ButtonBar.ButtonData.OK_DONE);
+        Alert alert = new Alert(Alert.AlertType.WARNING,
+                "Les dernières modifications n'ont pas pu être enregistrées"
+                        + (error != null ? " :\n" + error.getMessage() : ".")
+                        + "\n\nEn quittant maintenant, elles seront perdues.",
+                quit, ButtonType.CANCEL);
+        alert.setTitle("Sauvegarde impossible");
+        alert.setHeaderText(null);
+        centerDialog(alert, stage);
+        return alert.showAndWait().orElse(ButtonType.CANCEL) == quit;
+    }
+
+    @Override
+    public void stop() {
+        // Attendre la dernière sauvegarde en arrière-plan avant de quitter
+        if (inbox != null) inbox.close();
+        if (controller != null) controller.close();
+        if (pdfViewerPane != null) pdfViewerPane.close();
+        ThumbnailCache.getDefault().close();
+    }
+
     /* ========================= EDIT CANDIDATURE ========================= */
     private void editCandidature(Candidature c) {
         Dialog<Candidature> dialog = new Dialog<>();
@@ -536,13 +717,13 @@ public class MainApp extends Application {
         });
 
         dialog.showAndWait().ifPresent(updated -> {
-            controller.save();
+            controller.update(updated);
             table.refresh();
         });
     }
 
     private void showStatWindow() {
-        CandidatureService service = new CandidatureService(table.getItems());
+        CandidatureService service = statisticsService();
 
         Stage statStage = new Stage();
         statStage.setTitle("Rapport Statistiques Candidatures");
@@ -581,6 +762,19 @@ public class MainApp extends Application {
 
 
 
+    // Sans filtre : comptages faits par le stockage (requêtes SQL avec H2), une fois les modifications écrites.
+    // Avec un filtre, ou si la sauvegarde tarde : sur les lignes affichées
+    private CandidatureService statisticsService() {
+        if (table.getItems().size() == controller.getCandidatures().size()) {
+            try {
+                if (controller.flush(2, TimeUnit.SECONDS)) return new CandidatureService(controller.getRepository());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return new CandidatureService(table.getItems());
+    }
+
     /* ========================= CREATE CANDIDATURE ========================= */
     private void createCandidature(Stage stage) {
         Dialog<Candidature> dialog = new Dialog<>();
@@ -678,77 +872,402 @@ public class MainApp extends Application {
     /* ========================= IMPORT PDF ========================= */
 
     private void importPdf(Stage stage) {
+        // Aucune candidature sélectionnée : chaque PDF sera classé d'après son contenu
         Candidature c = table.getSelectionModel().getSelectedItem();
-        if (c == null) return;
 
-        // 1️⃣ Ouvrir FileChooser sur thread UI uniquement
+        // 1️⃣ Ouvrir FileChooser sur thread UI uniquement (sélection multiple)
         FileChooser chooser = new FileChooser();
         chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF", "*.pdf"));
-        File f = chooser.showOpenDialog(stage);
-        if (f == null) return;
+        List<File> files = chooser.showOpenMultipleDialog(stage);
+        if (files == null || files.isEmpty()) return;
 
-        // ✅ FileChooser fermé, UI thread libre, on peut lancer un thread lourd
-        stage.getScene().setCursor(Cursor.WAIT);
+        importFiles(stage, c, files);
+    }
 
-        new Thread(() -> {
-            LocalDateTime dt = null;
-            boolean found = false;
+    private void importFolder(Stage stage) {
+        // Aucune candidature sélectionnée : chaque PDF sera classé d'après son contenu
+        Candidature c = table.getSelectionModel().getSelectedItem();
 
-            // 2️⃣ Lecture PDF + extraction date (votre méthode originale)
-            try (PDDocument document = PDDocument.load(f)) {
-                PDFTextStripper stripper = new PDFTextStripper();
-                String text = stripper.getText(document);
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Importer tous les PDF d'un dossier");
+        File dir = chooser.showDialog(stage);
+        if (dir == null) return;
 
-                Matcher matcher = dateTimePattern.matcher(text);
-                while (matcher.find()) {
-                    String dateStr = matcher.group(1);
-                    try {
-                        dt = LocalDateTime.parse(dateStr, formatter);
-                        found = true;
-                    } catch (DateTimeParseException ignored) {}
-                }
-            } catch (IOException ex) {
-                ex.printStackTrace();
+        importFiles(stage, c, List.of(dir));
+    }
+
+    /**
+     * Fichiers et dossiers (choisis ou déposés) importés par lot dans la candidature ;
+     * sans candidature (c null), chaque PDF va à celle dont le texte cite l'entreprise.
+     */
+    private void importFiles(Stage stage, Candidature c, List<File> selection) {
+        if (currentImport != null && currentImport.isRunning()) {
+            new Alert(Alert.AlertType.INFORMATION, "Un import est déjà en cours.").showAndWait();
+            return;
+        }
+
+        Function<Path, PdfBatchImportService.Target> router;
+        if (c != null) {
+            PdfBatchImportService.Target target = new PdfBatchImportService.Target(c.getId(), c.getDossier());
+            router = source -> target;
+        } else {
+            CandidatureMatcher matcher = controller.getMatcher();
+            router = source -> route(matcher, source);
+        }
+        Task<PdfBatchImportService.Report> task = new Task<>() {
+            @Override
+            protected PdfBatchImportService.Report call() {
+                updateMessage("Recherche des PDF…");
+                List<Path> pdfs = PdfBatchImportService.collectPdfs(selection);
+                return batchImport.importAll(pdfs, router, new PdfBatchImportService.Progress() {
+                    @Override
+                    public void update(int done, int total, String message) {
+                        updateProgress(done, total);
+                        updateMessage(message);
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return importCancelRequested;
+                    }
+
+                    // Question posée sur le thread JavaFX, l'import attend la réponse
+                    @Override
+                    public PdfBatchImportService.DuplicateAction onDuplicate(Path source, Path existing) {
+                        PdfBatchImportService.DuplicateAction choice = duplicateChoice;
+                        if (choice != null) return choice;
+                        CompletableFuture<PdfBatchImportService.DuplicateAction> answer = new CompletableFuture<>();
+                        Platform.runLater(() -> {
+                            try {
+                                answer.complete(askDuplicate(stage, source, existing));
+                            } catch (RuntimeException ex) {
+                                answer.completeExceptionally(ex);
+                            }
+                        });
+                        try {
+                            return answer.get();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            return PdfBatchImportService.DuplicateAction.SKIP;
+                        } catch (ExecutionException ex) {
+                            ex.getCause().printStackTrace();
+                            return PdfBatchImportService.DuplicateAction.SKIP;
+                        }
+                    }
+                });
             }
+        };
 
-            // 3️⃣ Déplacer ou copier le fichier après fermeture PDF
-            DocumentFile doc = null;
-            try {
-                doc = PdfImportService.importer(f.toPath(), c.getDossier(), dt);
-            } catch (IOException e) {
-                e.printStackTrace();
+        importProgress.progressProperty().bind(task.progressProperty());
+        importLabel.textProperty().bind(task.messageProperty());
+        importPanel.setVisible(true);
+        cancelImportButton.setDisable(false);
+        importCancelRequested = false;
+        duplicateChoice = null;
+        currentImport = task;
+
+        task.setOnSucceeded(e -> finishImport(stage, task.getValue()));
+        task.setOnFailed(e -> {
+            endImport();
+            System.err.println("Import impossible" + (c != null ? " pour " + c.getEntreprise() + " - " + c.getPoste() : ""));
+            task.getException().printStackTrace();
+            new Alert(Alert.AlertType.ERROR, "Import interrompu : " + task.getException().getMessage()).showAndWait();
+        });
+
+        new Thread(task, "pdf-import-thread").start();
+    }
+
+    // Candidature citée par le PDF (texte lu via le cache partagé), null si aucune n'est reconnue
+    private static PdfBatchImportService.Target route(CandidatureMatcher matcher, Path source) {
+        try {
+            CandidatureMatcher.Proposal best = matcher.best(source);
+            if (best == null) return null;
+            return new PdfBatchImportService.Target(best.candidature().getId(), best.candidature().getDossier());
+        } catch (IOException e) {
+            System.err.println("PDF illisible : " + source + " (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    // Un seul passage par candidature : ajout, index, sauvegarde, renommage et affichage
+    private void finishImport(Stage stage, PdfBatchImportService.Report report) {
+        endImport();
+        attachImported(report.imported());
+        showImportReport(stage, report);
+    }
+
+    // Documents rangés rattachés à leur candidature (une mise à jour par candidature)
+    private void attachImported(List<PdfBatchImportService.Imported> importedDocs) {
+        Map<String, List<DocumentFile>> byCandidature = new LinkedHashMap<>();
+        for (PdfBatchImportService.Imported imported : importedDocs) {
+            byCandidature.computeIfAbsent(imported.candidatureId(), id -> new ArrayList<>()).add(imported.document());
+        }
+
+        Candidature selected = table.getSelectionModel().getSelectedItem();
+        for (Map.Entry<String, List<DocumentFile>> entry : byCandidature.entrySet()) {
+            Candidature c = controller.findById(entry.getKey());
+            if (c == null) {
+                System.err.println("Candidature supprimée pendant l'import : " + entry.getKey());
+                continue;
             }
+            List<DocumentFile> docs = entry.getValue();
+            docs.forEach(c::ajouterDocument);
+            controller.update(c);
+            // Texte complet extrait en arrière-plan, une fois le dossier renommé
+            renameFolder(c, () -> controller.getFullText().indexInBackground(c, docs));
+
+            if (c == selected) showDocuments(c);
+        }
+
+        // Classement automatique vers une seule candidature : elle est affichée
+        if (byCandidature.size() == 1) {
+            Candidature c = controller.findById(byCandidature.keySet().iterator().next());
+            if (c != null && c != selected) {
+                table.getSelectionModel().select(c);
+                table.scrollTo(c);
+            }
+        }
+    }
 
-            DocumentFile finalDoc = doc;
-            boolean finalFound = found;
+    /* =========================
+       IMPORT DE MAILS
+       ========================= */
+
+    private void importMails(Stage stage, List<Path> selection) {
+        if (currentImport != null && currentImport.isRunning()) {
+            new Alert(Alert.AlertType.INFORMATION, "Un import est déjà en cours.").showAndWait();
+            return;
+        }
+
+        List<Path> sources = MailImportService.collectMailFiles(selection);
+        if (sources.isEmpty()) return;
+
+        // Import déjà commencé (ou terminé) : reprise à la dernière position, ou relecture complète
+        if (sources.stream().anyMatch(p -> mailImport.checkpoint(p) > 0)) {
+            ButtonType resume = new ButtonType("Reprendre", ButtonBar.ButtonData.OK_DONE);
+            ButtonType restart = new ButtonType("Tout relire", ButtonBar.ButtonData.OTHER);
+            Alert ask = new Alert(Alert.AlertType.CONFIRMATION,
+                    "Ces mails ont déjà été importés en partie. Reprendre après le dernier message traité ?"
+                            + "\n(En relisant tout, les PDF déjà rangés sont ignorés.)",
+                    resume, restart, ButtonType.CANCEL);
+            ask.setTitle("Import de mails");
+            ask.setHeaderText(null);
+            centerDialog(ask, stage);
+            ButtonType answer = ask.showAndWait().orElse(ButtonType.CANCEL);
+            if (answer == ButtonType.CANCEL) return;
+            if (answer == restart) sources.forEach(mailImport::resetCheckpoint);
+        }
+
+        CandidatureMatcher matcher = controller.getMatcher();
+        Task<MailImportService.Report> task = new Task<>() {
+            @Override
+            protected MailImportService.Report call() {
+                updateMessage("Lecture des mails…");
+                return mailImport.importAll(sources, (mail, pdf) -> routeMail(matcher, mail, pdf),
+                        new PdfBatchImportService.Progress() {
+                            @Override
+                            public void update(int done, int total, String message) {
+                                updateProgress(done, total);
+                                updateMessage(message);
+                            }
+
+                            @Override
+                            public boolean isCancelled() {
+                                return importCancelRequested;
+                            }
+                        });
+            }
+        };
 
-            // 4️⃣ Mettre à jour UI via Platform.runLater
-            Platform.runLater(() -> {
-                stage.getScene().setCursor(Cursor.DEFAULT);
+        importProgress.progressProperty().bind(task.progressProperty());
+        importLabel.textProperty().bind(task.messageProperty());
+        importPanel.setVisible(true);
+        cancelImportButton.setDisable(false);
+        importCancelRequested = false;
+        currentImport = task;
 
-                if (finalDoc != null) {
-                    c.getDocuments().add(finalDoc);
-                    controller.save();
+        task.setOnSucceeded(e -> {
+            endImport();
+            MailImportService.Report report = task.getValue();
+            attachImported(report.imported());
+            commitMailImport(report);
+            showMailReport(stage, report);
+        });
+        task.setOnFailed(e -> {
+            endImport();
+            System.err.println("Import des mails impossible");
+            task.getException().printStackTrace();
+            new Alert(Alert.AlertType.ERROR, "Import interrompu : " + task.getException().getMessage()).showAndWait();
+        });
 
-                    var sortedDocs = FXCollections.observableArrayList(c.getDocuments());
-                    sortedDocs.sort((d1, d2) -> {
-                        LocalDateTime dt1 = d1.getDateMail() != null ? d1.getDateMail() : LocalDateTime.MIN;
-                        LocalDateTime dt2 = d2.getDateMail() != null ? d2.getDateMail() : LocalDateTime.MIN;
-                        return dt2.compareTo(dt1);
-                    });
+        new Thread(task, "mail-import-thread").start();
+    }
 
-                    pdfViewerPane.setPdfList(sortedDocs, c);
-                    if (!sortedDocs.isEmpty()) {
-                        pdfViewerPane.getPdfListView().getSelectionModel().select(0);
-                    }
+    // Positions et empreintes enregistrées une fois les documents rattachés écrits sur disque
+    private void commitMailImport(MailImportService.Report report) {
+        Thread commit = new Thread(() -> {
+            try {
+                if (controller.flush(30, TimeUnit.SECONDS)) {
+                    mailImport.commit(report);
+                } else {
+                    System.err.println("Sauvegarde non confirmée : les derniers mails seront relus au prochain import");
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "mail-import-commit");
+        commit.setDaemon(true);
+        commit.start();
+    }
 
-                if (!finalFound) {
-                    new Alert(Alert.AlertType.INFORMATION, "Aucune date détectée dans ce PDF.").showAndWait();
-                }
-            });
+    // Entreprise citée dans le mail (objet, expéditeur, texte), à défaut dans le PDF lui-même
+    private static PdfBatchImportService.Target routeMail(CandidatureMatcher matcher, MailImportService.Mail mail,
+                                                          Path pdf) {
+        CandidatureMatcher.Proposal best = matcher.best(mail.text());
+        if (best != null) {
+            return new PdfBatchImportService.Target(best.candidature().getId(), best.candidature().getDossier());
+        }
+        return route(matcher, pdf);
+    }
+
+    private void showMailReport(Stage stage, MailImportService.Report report) {
+        StringBuilder details = new StringBuilder();
+        if (!report.skipped().isEmpty()) {
+            details.append("Pièces jointes non importées :\n");
+            report.skipped().forEach(s -> details.append("  ").append(s.attachment()).append(" (").append(s.mail())
+                    .append(") : ").append(s.reason()).append('\n'));
+        }
+        if (!report.failures().isEmpty()) {
+            details.append("Échecs :\n");
+            report.failures().forEach(f -> details.append("  ").append(f).append('\n'));
+        }
+
+        Alert alert = new Alert(report.failures().isEmpty() ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING);
+        alert.setTitle("Import de mails");
+        alert.setHeaderText(report.messages() + " message(s) lu(s), " + report.imported().size() + " PDF importé(s)"
+                + (report.cancelled() ? " — import interrompu, il reprendra au message suivant" : ""));
+        if (!details.isEmpty()) {
+            TextArea area = new TextArea(details.toString());
+            area.setEditable(false);
+            area.setWrapText(true);
+            area.setPrefRowCount(Math.min(15, details.toString().split("\n").length + 1));
+            alert.getDialogPane().setContent(area);
+        } else if (report.messages() == 0) {
+            alert.setContentText("Aucun nouveau message depuis le dernier import.");
+        }
+        centerDialog(alert, stage);
+        alert.showAndWait();
+    }
+
+    private void showDocuments(Candidature c) {
+        var sortedDocs = FXCollections.observableArrayList(c.getDocuments());
+        sortedDocs.sort((d1, d2) -> {
+            LocalDateTime dt1 = d1.getDateMail() != null ? d1.getDateMail() : LocalDateTime.MIN;
+            LocalDateTime dt2 = d2.getDateMail() != null ? d2.getDateMail() : LocalDateTime.MIN;
+            return dt2.compareTo(dt1);
+        });
+
+        pdfViewerPane.setPdfList(sortedDocs, c);
+        if (!sortedDocs.isEmpty()) {
+            pdfViewerPane.getPdfListView().getSelectionModel().select(0);
+        }
+    }
+
+    private void endImport() {
+        importProgress.progressProperty().unbind();
+        importLabel.textProperty().unbind();
+        importPanel.setVisible(false);
+        currentImport = null;
+    }
+
+    private void refreshInbox() {
+        inboxItems = inbox.pending();
+        inboxPanel.setVisible(!inboxItems.isEmpty());
+        inboxLabel.setText("Boîte de réception : " + inboxItems.size() + " PDF à classer");
+
+        StringBuilder list = new StringBuilder(inbox.getDir().toString());
+        inboxItems.stream().limit(20).forEach(item -> list.append('\n').append(item.file().getFileName())
+                .append(item.date() != null ? " — " + dateFormatter.format(item.date()) : ""));
+        if (inboxItems.size() > 20) list.append("\n…");
+        inboxLabel.setTooltip(new Tooltip(list.toString()));
+    }
 
-        }, "pdf-import-thread").start();
+    // PDF déjà stocké dans une autre candidature : ignorer, lier au fichier existant ou importer
+    private PdfBatchImportService.DuplicateAction askDuplicate(Stage stage, Path source, Path existing) {
+        ButtonType skip = new ButtonType("Ignorer", ButtonBar.ButtonData.CANCEL_CLOSE);
+        ButtonType link = new ButtonType("Lier au fichier existant", ButtonBar.ButtonData.OK_DONE);
+        ButtonType copy = new ButtonType("Importer quand même", ButtonBar.ButtonData.OTHER);
+        CheckBox applyToAll = new CheckBox("Même choix pour les autres doublons de cet import");
+        applyToAll.setSelected(true);
+
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, null, link, copy, skip);
+        alert.setTitle("Import PDF");
+        alert.setHeaderText(source.getFileName() + " est déjà stocké");
+        alert.getDialogPane().setContent(new VBox(10,
+                new Label("Contenu identique à " + existing.getParent().getFileName()
+                        + File.separator + existing.getFileName()),
+                applyToAll));
+        centerDialog(alert, stage);
+
+        ButtonType answer = alert.showAndWait().orElse(skip);
+        PdfBatchImportService.DuplicateAction action = answer == link ? PdfBatchImportService.DuplicateAction.LINK
+                : answer == copy ? PdfBatchImportService.DuplicateAction.IMPORT
+                : PdfBatchImportService.DuplicateAction.SKIP;
+        if (applyToAll.isSelected()) duplicateChoice = action;
+        return action;
+    }
+
+    // Récapitulatif unique à la place d'une alerte par fichier
+    private void showImportReport(Stage stage, PdfBatchImportService.Report report) {
+        int imported = report.imported().size();
+        if (imported == 1 && report.failures().isEmpty() && report.withoutDate().isEmpty()
+                && report.duplicates().isEmpty() && report.unmatched().isEmpty() && !report.cancelled()) {
+            return;
+        }
+
+        StringBuilder details = new StringBuilder();
+        if (!report.withoutDate().isEmpty()) {
+            details.append("Aucune date détectée (date du jour utilisée) :\n");
+            report.withoutDate().forEach(p -> details.append("  ").append(p.getFileName()).append('\n'));
+        }
+        if (!report.duplicates().isEmpty()) {
+            details.append("Déjà stockés :\n");
+            report.duplicates().forEach(d -> details.append("  ").append(d.source().getFileName())
+                    .append(" = ").append(d.existing().getParent().getFileName()).append(File.separator)
+                    .append(d.existing().getFileName()).append(switch (d.action()) {
+                        case SKIP -> " (ignoré)";
+                        case LINK -> " (lié)";
+                        case IMPORT -> " (importé)";
+                    }).append('\n'));
+        }
+        if (!report.unmatched().isEmpty()) {
+            details.append("Aucune candidature reconnue (laissés en place) :\n");
+            report.unmatched().forEach(p -> details.append("  ").append(p).append('\n'));
+        }
+        if (!report.failures().isEmpty()) {
+            details.append("Échecs :\n");
+            report.failures().forEach(f -> details.append("  ").append(f.source().getFileName())
+                    .append(" : ").append(f.message()).append('\n'));
+        }
+
+        Alert alert = new Alert(report.failures().isEmpty() ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING);
+        alert.setTitle("Import PDF");
+        alert.setHeaderText(imported + " PDF importé(s)"
+                + (report.cancelled() ? " — import annulé" : "")
+                + (report.duplicates().isEmpty() ? "" : ", " + report.duplicates().size() + " doublon(s)")
+                + (report.unmatched().isEmpty() ? "" : ", " + report.unmatched().size() + " non classé(s)")
+                + (report.failures().isEmpty() ? "" : ", " + report.failures().size() + " échec(s)"));
+        if (!details.isEmpty()) {
+            TextArea area = new TextArea(details.toString());
+            area.setEditable(false);
+            area.setWrapText(true);
+            area.setPrefRowCount(Math.min(15, details.toString().split("\n").length + 1));
+            alert.getDialogPane().setContent(area);
+        } else if (imported == 0) {
+            alert.setContentText("Aucun PDF trouvé dans la sélection.");
+        }
+        centerDialog(alert, stage);
+        alert.showAndWait();
     }
 
 
@@ -759,21 +1278,51 @@ public class MainApp extends Application {
                                  CheckBox pdfFilter,
                                  CheckBox responseFilter) {
 
-        String text = searchField.getText().toLowerCase();
+        String text = searchField.getText();
+        boolean searching = text != null && !text.isBlank();
+
+        // Recherche texte relancée seulement si la saisie ou les données ont changé :
+        // basculer un filtre ne coûte alors que quelques ET entre bitmaps
+        if (!searching) {
+            searchScores.clear();
+            lastSearch = null;
+        } else if (!text.equals(lastSearch) || lastSearchRevision != controller.getRevision()) {
+            // Entreprise / poste / notes d'abord, puis contenu des PDF classé par pertinence
+            searchScores.clear();
+            for (Candidature c : controller.getSearchIndex().search(text)) searchScores.put(c, METADATA_SCORE);
+            for (FullTextIndex.Hit hit : controller.getFullText().search(text)) {
+                Candidature c = controller.findById(hit.candidatureId());
+                if (c != null) searchScores.merge(c, hit.score(), Double::sum);
+            }
+            lastSearch = text;
+            lastSearchRevision = controller.getRevision();
+        }
+
+        FacetIndex facets = controller.getFacets();
         StatutCandidature statut = statutFilter.getValue();
-        String mois = moisFilter.getValue();
-        boolean filterPDF = pdfFilter.isSelected();
-        boolean filterResponse = responseFilter.isSelected();
-
-        filtered.setPredicate(c -> {
-            boolean matchSearch = text.isEmpty() || c.getEntreprise().toLowerCase().contains(text)
-                    || c.getPoste().toLowerCase().contains(text);
-            boolean matchStatut = statut == StatutCandidature.TOUTES || c.getStatut() == statut;
-            boolean matchMonth = mois.equals("Tous") || (c.getDateEnvoi() != null && c.getDateEnvoi().getMonthValue() == Integer.parseInt(mois));
-            boolean matchPDF = !filterPDF || !c.getDocuments().isEmpty();
-            boolean matchResponse = !filterResponse || c.getStatut() != StatutCandidature.EN_ATTENTE;
-            return matchSearch && matchStatut && matchMonth && matchPDF && matchResponse;
-        });
+        int mois = moisFilter.getSelectionModel().getSelectedIndex(); // 0 = "Tous", puis 1..12
+        BitSet selection;
+        if (controller.getRepository().hasIndexedQueries()
+                && ((statut != null && statut != StatutCandidature.TOUTES) || mois > 0)) {
+            // Statut et mois demandés au stockage (requête indexée), le reste sur les bitmaps
+            selection = facets.select(null, 0, pdfFilter.isSelected(), responseFilter.isSelected());
+            selection.and(facets.toBitSet(controller.findByFilter(statut, mois > 0 ? mois : null, null)));
+        } else {
+            selection = facets.select(statut, mois, pdfFilter.isSelected(), responseFilter.isSelected());
+        }
+        if (searching) selection.and(facets.toBitSet(searchScores.keySet()));
+
+        boolean unfiltered = !searching && selection.cardinality() == facets.size();
+        filtered.setPredicate(unfiltered ? c -> true : c -> facets.contains(selection, c));
+
+        colScore.setVisible(searching);
+        if (!searching) {
+            table.getSortOrder().remove(colScore);
+        } else if (!table.getSortOrder().contains(colScore)) {
+            table.getSortOrder().add(0, colScore);
+        } else {
+            table.sort();
+        }
     }
 
 
@@ -824,6 +1373,8 @@ public class MainApp extends Application {
             @Override
             protected Void call() {
                 for (Candidature c : filteredCandidatures) {
+                    // Documents non chargés : la date vient du nom actuel du dossier (voir FileSystemService)
+                    if (c.getDossier() == null) continue;
                     try {
                         FileSystemService.renameCandidatureFolderWithOldestPdfDate(c);
                     } catch (IOException e) {
@@ -847,5 +1398,30 @@ public class MainApp extends Application {
 
     }
 
+    private void renameFolder(Candidature c, Runnable then) {
+
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws IOException {
+                FileSystemService.renameCandidatureFolderWithOldestPdfDate(c);
+                return null;
+            }
+        };
+
+        task.setOnSucceeded(e -> {
+            controller.save();
+            table.refresh();
+            pdfViewerPane.getPdfListView().refresh();
+            then.run();
+        });
+        task.setOnFailed(e -> {
+            System.err.println("Renommage impossible pour " + c.getEntreprise() + " - " + c.getPoste());
+            task.getException().printStackTrace();
+            then.run();
+        });
+
+        new Thread(task, "rename-candidature-folder").start();
+    }
+
     public static void main(String[] args) { launch(args); }
 }
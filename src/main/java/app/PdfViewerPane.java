@@ -3,63 +3,166 @@ package app;
 import app.controller.MainController;
 import app.model.Candidature;
 import app.model.DocumentFile;
+import app.service.ExtractedTextCache;
+import app.service.PageImagePool;
+import app.service.PdfDocumentCache;
+import app.service.PdfRenderScheduler;
+import app.service.RenderedPageCache;
+import app.service.ThumbnailCache;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
-import javafx.concurrent.Task;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
 import javafx.scene.control.*;
+import javafx.scene.control.skin.ListViewSkin;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Screen;
+import javafx.util.Duration;
 import lombok.Getter;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 
-import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
-
-public class PdfViewerPane extends BorderPane {
+import java.util.stream.IntStream;
+
+public final class PdfViewerPane extends BorderPane {
+
+    // Résolution utilisée tant que la largeur du panneau n'est pas connue
+    private static final float DEFAULT_DPI = 150;
+    private static final float PREVIEW_DPI = 36;
+    private static final float MIN_DPI = 36;
+    private static final float MAX_DPI = 400;
+    // Pas de quantification : des largeurs voisines partagent le même rendu en cache
+    private static final float DPI_STEP = 8;
+    // Écart de résolution au-delà duquel un redimensionnement relance le rendu
+    private static final double RERENDER_THRESHOLD = 0.15;
+    private static final String PREFETCH = "prefetch:";
+    private static final String PAGE_CHANNEL = "page:";
+    // Marge horizontale autour des pages (barre de défilement comprise)
+    private static final double PAGE_INSETS = 30;
+    private static final double THUMBNAIL_HEIGHT = 170;
+
+    // Ordre d'affichage de la liste des documents d'une candidature (le plus récent en tête)
+    private static final Comparator<DocumentFile> NEWEST_FIRST = Comparator.comparing(
+            (DocumentFile d) -> d.getDateMail() != null ? d.getDateMail() : LocalDateTime.MIN,
+            Comparator.reverseOrder());
 
     private final MainController controller;
     private final AtomicLong renderVersion = new AtomicLong();
+    // Rendus limités en parallèle ; une nouvelle page annule la précédente
+    @Getter
+    private final PdfRenderScheduler renderScheduler =
+            new PdfRenderScheduler(PdfRenderScheduler.defaultParallelism());
+    // PDF ouverts réutilisés d'une page à l'autre (et d'une sélection à l'autre)
+    @Getter
+    private final PdfDocumentCache documentCache = new PdfDocumentCache(8, 256L * 1024 * 1024);
+    // Pages déjà rendues (4 octets par pixel), pour revenir sur une page sans la re-rastériser
+    @Getter
+    private final RenderedPageCache<Image> pageCache = new RenderedPageCache<>(
+            128L * 1024 * 1024, img -> (long) img.getWidth() * (long) img.getHeight() * 4);
+    // Tampons des pages sorties du cache, réutilisés pour les rendus suivants
+    @Getter
+    private final PageImagePool imagePool = new PageImagePool(64L * 1024 * 1024);
+    // Images pooled affichées (thread JavaFX) : jamais recyclées tant qu'elles sont à l'écran
+    private final Set<Image> displayed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Image> evictedWhileDisplayed = Collections.newSetFromMap(new IdentityHashMap<>());
 
     private DocumentFile currentDocumentFile;
     private Path currentPdfPath;
+    private long currentPdfModified;
     private Candidature currentCandidature;
+    // Candidatures voisines dans le tableau : leur premier document est préchargé
+    private List<Candidature> neighbours = List.of();
 
-    private final ImageView imageView = new ImageView();
+    // Vue continue : seules les cellules visibles existent et portent une image
+    private final ListView<Integer> pageList = new ListView<>();
+    private VirtualFlow<?> pageFlow;
+    private final AtomicLong cellIds = new AtomicLong();
 
     @Getter
     private final ListView<DocumentFile> pdfListView = new ListView<>();
+    // Vignettes de toutes les pages du document, servies depuis le cache disque
+    private final ListView<Path> thumbnailStrip = new ListView<>();
+    private boolean syncingStrip;
 
     private int currentPage = 0;
+    // Dernière ouverture demandée (thread JavaFX) : les réponses plus anciennes sont ignorées
+    private long openRequests;
+    // Lecture de la mise en page des PDF ouverts, hors du thread JavaFX
+    private final ExecutorService layoutReader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "pdf-layout-reader");
+        t.setDaemon(true);
+        return t;
+    });
     private int pageCount = 0;
+    // Taille affichée de chaque page en points (rotation comprise) : hauteur des
+    // emplacements connue sans rien rendre
+    private float[] pageWidths = new float[0];
+    private float[] pageHeights = new float[0];
+    // Pages visibles, pour ne relancer le préchargement que si elles changent
+    private int firstVisible = -1;
+    private int lastVisible = -1;
+    // Largeur (pixels physiques) à laquelle les pages sont rendues ; 0 = pas encore connue
+    private double renderWidth;
+    private final PauseTransition resizeDebounce = new PauseTransition(Duration.millis(200));
+
+    // Image rendue et génération de son tampon au moment du rendu
+    private record Rendered(Image image, long generation) {
+    }
 
     public PdfViewerPane(List<DocumentFile> pdfList, MainController controller) {
         this.controller = controller;
-        imageView.fitWidthProperty().bind(widthProperty().subtract(20));
+        pageCache.setOnEvicted(image -> Platform.runLater(() -> recycle(image)));
+
+        // Redimensionnement ou changement d'écran (HiDPI) : nouveau rendu si la résolution utile change
+        resizeDebounce.setOnFinished(e -> rerenderIfResolutionChanged());
+        pageList.widthProperty().addListener((obs, old, w) -> resizeDebounce.playFromStart());
+        sceneProperty().addListener((obs, oldScene, scene) -> {
+            if (scene == null) return;
+            scene.windowProperty().addListener((o, oldWindow, window) -> {
+                if (window != null) {
+                    window.outputScaleXProperty().addListener((x, a, b) -> resizeDebounce.playFromStart());
+                }
+            });
+        });
 
         /* =========================
-           IMAGE VIEW (PDF)
+           PAGES (DÉFILEMENT CONTINU)
            ========================= */
-        imageView.setPreserveRatio(true);
-        imageView.setSmooth(true);
-        imageView.setCache(true);
-        setCenter(imageView);
-
-// ScrollPane pour le PDF
-        ScrollPane pdfScrollPane = new ScrollPane(imageView);
-        pdfScrollPane.setFitToWidth(true);
-        pdfScrollPane.setFitToHeight(true);
-        pdfScrollPane.setPannable(true); // permet de bouger le PDF avec la souris
-        setCenter(pdfScrollPane);
-
-
-
-
+        pageList.setCellFactory(lv -> new PageCell());
+        pageList.setFocusTraversable(false);
+        pageList.setStyle("-fx-background-color: #808080;");
+        pageList.skinProperty().addListener((obs, old, skin) -> {
+            if (!(skin instanceof ListViewSkin<?> listSkin)) return;
+            pageFlow = listSkin.getChildren().stream()
+                    .filter(VirtualFlow.class::isInstance)
+                    .map(n -> (VirtualFlow<?>) n)
+                    .findFirst().orElse(null);
+            if (pageFlow != null) pageFlow.positionProperty().addListener((o, a, b) -> onScroll());
+        });
+        setCenter(pageList);
 
         /* =========================
            LISTE DES PDFs (TOP)
@@ -89,8 +192,49 @@ public class PdfViewerPane extends BorderPane {
                     }
                 });
 
-        setTop(pdfListView);
-        BorderPane.setMargin(pdfListView, new Insets(5));
+        /* =========================
+           VIGNETTES (à côté de la liste)
+           ========================= */
+        thumbnailStrip.setOrientation(Orientation.HORIZONTAL);
+        thumbnailStrip.setPrefHeight(200);
+        thumbnailStrip.setPrefWidth(320);
+        thumbnailStrip.setCellFactory(lv -> new ListCell<>() {
+            private final ImageView view = new ImageView();
+
+            {
+                view.setPreserveRatio(true);
+                view.setFitHeight(THUMBNAIL_HEIGHT);
+                setContentDisplay(ContentDisplay.TOP);
+            }
+
+            @Override
+            protected void updateItem(Path item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null) {
+                    view.setImage(null);
+                    setGraphic(null);
+                    setText(null);
+                } else {
+                    // PNG lu en arrière-plan, le PDF n'est pas ouvert
+                    view.setImage(new Image(item.toUri().toString(), 0, THUMBNAIL_HEIGHT, true, true, true));
+                    setGraphic(view);
+                    setText(String.valueOf(getIndex() + 1));
+                }
+            }
+        });
+
+        thumbnailStrip.getSelectionModel()
+                .selectedIndexProperty()
+                .addListener((obs, old, index) -> {
+                    int page = index.intValue();
+                    if (syncingStrip || page < 0 || page == currentPage) return;
+                    showPage(page);
+                });
+
+        HBox top = new HBox(5, pdfListView, thumbnailStrip);
+        HBox.setHgrow(pdfListView, Priority.ALWAYS);
+        setTop(top);
+        BorderPane.setMargin(top, new Insets(5));
 
         /* =========================
            NAVIGATION PAGES (BOTTOM)
@@ -99,17 +243,11 @@ public class PdfViewerPane extends BorderPane {
         Button next = new Button("Suivant");
 
         prev.setOnAction(e -> {
-            if (currentPage > 0) {
-                currentPage--;
-                renderPage();
-            }
+            if (currentPage > 0) showPage(currentPage - 1);
         });
 
         next.setOnAction(e -> {
-            if (currentPage < pageCount - 1) {
-                currentPage++;
-                renderPage();
-            }
+            if (currentPage < pageCount - 1) showPage(currentPage + 1);
         });
 
         ToolBar toolbar = new ToolBar(prev, next);
@@ -138,49 +276,407 @@ public class PdfViewerPane extends BorderPane {
     /* =========================
        OUVERTURE PDF
        ========================= */
-    private synchronized void openPdf(Path path) {
+    // Thread JavaFX : la mise en page (tailles des pages) est lue en arrière-plan, puis publiée
+    private void openPdf(Path path) {
         currentPdfPath = path;
         currentPage = 0;
+        long request = ++openRequests;
+
+        renderVersion.incrementAndGet();
+        renderScheduler.cancelAll(PAGE_CHANNEL);
+        firstVisible = -1;
+        lastVisible = -1;
+        pageCount = 0;
+        pageList.getItems().clear();
+        thumbnailStrip.getItems().clear();
+
+        CompletableFuture.supplyAsync(() -> readLayout(path), layoutReader)
+                .whenComplete((layout, error) -> Platform.runLater(() -> {
+                    // Un autre document a été sélectionné entre-temps
+                    if (request != openRequests) return;
+                    if (error != null) {
+                        System.err.println("PDF illisible : " + path);
+                        error.printStackTrace();
+                        pageWidths = new float[0];
+                        pageHeights = new float[0];
+                        return;
+                    }
+                    showLayout(path, layout);
+                }));
+    }
+
+    private record Layout(long modified, float[] widths, float[] heights) {
+    }
+
+    // Tailles connues si le PDF a déjà été analysé, sinon lues dans le dictionnaire
+    // des pages ; aucune page n'est rendue. Peut attendre un rendu en cours du même document
+    private Layout readLayout(Path path) {
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            ExtractedTextCache.Entry known = ExtractedTextCache.getDefault().get(path);
+            if (known != null) return new Layout(modified, known.pageWidths(), known.pageHeights());
+
+            float[][] sizes = documentCache.withDocument(path, (doc, renderer) -> {
+                int n = doc.getNumberOfPages();
+                float[][] result = new float[2][n];
+                for (int i = 0; i < n; i++) {
+                    PDPage page = doc.getPage(i);
+                    PDRectangle box = page.getCropBox();
+                    boolean rotated = page.getRotation() % 180 != 0;
+                    result[0][i] = rotated ? box.getHeight() : box.getWidth();
+                    result[1][i] = rotated ? box.getWidth() : box.getHeight();
+                }
+                return result;
+            });
+            return new Layout(modified, sizes[0], sizes[1]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void showLayout(Path path, Layout layout) {
+        currentPdfModified = layout.modified();
+        pageWidths = layout.widths();
+        pageHeights = layout.heights();
+        pageCount = pageWidths.length;
+
+        renderVersion.incrementAndGet();
+        renderScheduler.cancelAll(PAGE_CHANNEL);
+        firstVisible = -1;
+        lastVisible = -1;
+        pageList.getItems().setAll(IntStream.range(0, pageCount).boxed().toList());
+        pageList.scrollTo(0);
+        loadThumbnails(path);
+    }
+
+    // Vignettes générées en arrière-plan au premier affichage d'un document déjà importé
+    private void loadThumbnails(Path path) {
+        thumbnailStrip.getItems().clear();
+        ThumbnailCache.getDefault().thumbnails(path).whenComplete((files, error) -> {
+            if (error != null) {
+                System.err.println("Vignettes indisponibles pour " + path + " : " + error.getMessage());
+                return;
+            }
+            Platform.runLater(() -> {
+                if (!path.equals(currentPdfPath)) return;
+                thumbnailStrip.getItems().setAll(files);
+                selectThumbnail(currentPage);
+            });
+        });
+    }
 
-        try (PDDocument doc = PDDocument.load(path.toFile())) {
-            pageCount = doc.getNumberOfPages();
-        } catch (Exception e) {
-            pageCount = 0;
-            e.printStackTrace();
-            return;
+    private void selectThumbnail(int page) {
+        if (page >= thumbnailStrip.getItems().size()) return;
+        syncingStrip = true;
+        try {
+            thumbnailStrip.getSelectionModel().select(page);
+            thumbnailStrip.scrollTo(Math.max(0, page - 1));
+        } finally {
+            syncingStrip = false;
         }
+    }
+
+    /* =========================
+       NAVIGATION
+       ========================= */
+    private void showPage(int page) {
+        if (page < 0 || page >= pageCount) return;
+        currentPage = page;
+        pageList.scrollTo(page);
+        selectThumbnail(page);
+    }
 
-        renderPage();
+    // Page courante = première page visible (la dernière une fois en bas du document)
+    private void onScroll() {
+        if (pageFlow == null || pageCount == 0) return;
+        IndexedCell<?> first = pageFlow.getFirstVisibleCell();
+        IndexedCell<?> last = pageFlow.getLastVisibleCell();
+        if (first == null || last == null) return;
+
+        int page = pageFlow.getPosition() >= 1 ? last.getIndex() : first.getIndex();
+        if (page >= 0 && page != currentPage) {
+            currentPage = page;
+            selectThumbnail(page);
+        }
+        if (first.getIndex() != firstVisible || last.getIndex() != lastVisible) {
+            firstVisible = first.getIndex();
+            lastVisible = last.getIndex();
+            prefetch(currentPdfPath, firstVisible, lastVisible);
+        }
     }
 
     /* =========================
        RENDU PAGE (THREAD SAFE)
        ========================= */
-    private void renderPage() {
-        if (currentPdfPath == null) return;
-        if (currentPage < 0 || currentPage >= pageCount) return;
 
-        long version = renderVersion.incrementAndGet();
+    // Une cellule par page visible. Réutilisée pour une autre page, elle annule son
+    // rendu en cours (canal propre à la cellule) et lâche l'image précédente :
+    // la mémoire reste bornée par le nombre de cellules et par pageCache.
+    private class PageCell extends ListCell<Integer> {
+        private final String channel = PAGE_CHANNEL + cellIds.incrementAndGet();
+        private final ImageView view = new ImageView();
+        // Emplacement blanc dimensionné d'après la page, visible avant le rendu
+        private final StackPane slot = new StackPane(view);
+        private long requestedVersion = -1;
+        private int requestedPage = -1;
+        private float requestedDpi;
+        private boolean sharp;
+
+        PageCell() {
+            view.setPreserveRatio(true);
+            view.setSmooth(true);
+            view.fitWidthProperty().bind(pageList.widthProperty().subtract(PAGE_INSETS));
+            slot.maxWidthProperty().bind(view.fitWidthProperty());
+            slot.setStyle("-fx-background-color: white;");
+            setStyle("-fx-background-color: transparent; -fx-padding: 5 0 5 0;");
+            setAlignment(Pos.CENTER);
+        }
 
-        Task<Image> task = new Task<>() {
-            @Override
-            protected Image call() throws Exception {
-                try (PDDocument doc = PDDocument.load(currentPdfPath.toFile())) {
-                    PDFRenderer renderer = new PDFRenderer(doc);
-                    BufferedImage img = renderer.renderImageWithDPI(currentPage, 150);
-                    return SwingFXUtils.toFXImage(img, null);
-                }
+        @Override
+        protected void updateItem(Integer page, boolean empty) {
+            super.updateItem(page, empty);
+            if (empty || page == null || page >= pageWidths.length) {
+                release();
+                setGraphic(null);
+                return;
             }
-        };
+            float ratio = pageHeights[page] / Math.max(1, pageWidths[page]);
+            slot.minHeightProperty().bind(view.fitWidthProperty().multiply(ratio));
+            slot.prefHeightProperty().bind(view.fitWidthProperty().multiply(ratio));
+            setGraphic(slot);
+            show(page);
+        }
 
-        task.setOnSucceeded(e -> {
-            if (renderVersion.get() == version) {
-//                imageView.setFitWidth(getWidth() - 20);
-                imageView.setImage(task.getValue());
+        private void show(int page) {
+            long version = renderVersion.get();
+            Path path = currentPdfPath;
+            long modified = currentPdfModified;
+            float dpi = dpiFor(pageWidths[page], renderWidth());
+            if (version == requestedVersion && page == requestedPage && dpi == requestedDpi) return;
+
+            boolean samePage = version == requestedVersion && page == requestedPage;
+            requestedVersion = version;
+            requestedPage = page;
+            requestedDpi = dpi;
+
+            // Page déjà rendue à cette résolution : affichage immédiat, sans tâche de fond
+            Image cached = pageCache.get(new RenderedPageCache.PageKey(path, modified, page, dpi));
+            if (cached != null) {
+                renderScheduler.cancel(channel);
+                renderScheduler.cancel(channel + ":preview");
+                imagePool.claim(cached, imagePool.generation(cached));
+                display(cached);
+                sharp = true;
+                return;
             }
-        });
 
-        new Thread(task, "pdf-render-" + version).start();
+            // 1. Aperçu : la vignette sur disque si elle existe, sinon un rendu basse résolution.
+            // Pour un simple changement de résolution, l'ancienne image reste en place.
+            if (!samePage || !sharp) {
+                sharp = false;
+                if (page < thumbnailStrip.getItems().size()) {
+                    renderScheduler.cancel(channel + ":preview");
+                    display(new Image(thumbnailStrip.getItems().get(page).toUri().toString(), true));
+                } else {
+                    display(null);
+                    renderScheduler.submit(channel + ":preview", () -> rendered(renderAtDpi(path, modified, page, PREVIEW_DPI)))
+                            .thenAccept(preview -> Platform.runLater(() -> {
+                                if (preview != null && isCurrent(version, page, dpi) && !sharp
+                                        && imagePool.claim(preview.image(), preview.generation())) {
+                                    display(preview.image());
+                                }
+                            }));
+                }
+            }
+
+            // 2. Rendu net ; remplace (et annule) le rendu précédent de la cellule
+            renderScheduler.submit(channel, () -> rendered(renderAtDpi(path, modified, page, dpi)))
+                    .whenComplete((result, error) -> {
+                        if (result != null) {
+                            Platform.runLater(() -> {
+                                if (!isCurrent(version, page, dpi)) return;
+                                // Tampon sorti du cache et déjà réutilisé entre-temps : on refait la page
+                                if (!imagePool.claim(result.image(), result.generation())) {
+                                    requestedVersion = -1;
+                                    show(page);
+                                    return;
+                                }
+                                display(result.image());
+                                sharp = true;
+                                // Pages visibles prêtes : au tour des marges
+                                onScroll();
+                            });
+                        } else if (error != null && !(error instanceof CancellationException)) {
+                            System.err.println("Rendu impossible : " + path + " page " + (page + 1));
+                            error.printStackTrace();
+                        }
+                    });
+        }
+
+        private void display(Image image) {
+            Image old = view.getImage();
+            if (old == image) return;
+            view.setImage(image);
+            if (old != null) undisplayed(old);
+            if (image != null) displayed.add(image);
+        }
+
+        private boolean isCurrent(long version, int page, float dpi) {
+            return version == requestedVersion && page == requestedPage && dpi == requestedDpi
+                    && renderVersion.get() == version;
+        }
+
+        private void release() {
+            renderScheduler.cancel(channel);
+            renderScheduler.cancel(channel + ":preview");
+            display(null);
+            requestedVersion = -1;
+            requestedPage = -1;
+            sharp = false;
+        }
+    }
+
+    /* =========================
+       RECYCLAGE DES IMAGES
+       ========================= */
+
+    // Image sortie du cache : rendue au pool, sauf si une cellule l'affiche encore
+    private void recycle(Image image) {
+        if (displayed.contains(image)) {
+            evictedWhileDisplayed.add(image);
+        } else {
+            imagePool.release(image);
+        }
+    }
+
+    private void undisplayed(Image image) {
+        displayed.remove(image);
+        if (evictedWhileDisplayed.remove(image)) imagePool.release(image);
+    }
+
+    private Rendered rendered(Image image) {
+        return image != null ? new Rendered(image, imagePool.generation(image)) : null;
+    }
+
+    // Les cellules visibles recalculent leur résolution ; seules celles qui changent sont re-rendues
+    private void rerenderIfResolutionChanged() {
+        double width = targetWidthPixels();
+        if (width <= 0) return;
+        if (renderWidth > 0 && Math.abs(width - renderWidth) / renderWidth <= RERENDER_THRESHOLD) return;
+        renderWidth = width;
+        pageList.refresh();
+    }
+
+    /* =========================
+       RÉSOLUTION
+       ========================= */
+
+    private double renderWidth() {
+        if (renderWidth <= 0) renderWidth = targetWidthPixels();
+        return renderWidth;
+    }
+
+    // Largeur réelle d'affichage en pixels physiques (échelle de sortie de l'écran comprise)
+    private double targetWidthPixels() {
+        double width = pageList.getWidth() - PAGE_INSETS;
+        if (width <= 0) return 0;
+        double scale = getScene() != null && getScene().getWindow() != null
+                ? getScene().getWindow().getOutputScaleX()
+                : Screen.getPrimary().getOutputScaleX();
+        return width * scale;
+    }
+
+    private static float dpiFor(float pageWidthPoints, double targetWidthPixels) {
+        if (targetWidthPixels <= 0 || pageWidthPoints <= 0) return DEFAULT_DPI;
+        double dpi = targetWidthPixels * 72 / pageWidthPoints;
+        float quantized = (float) (Math.ceil(dpi / DPI_STEP) * DPI_STEP);
+        return Math.max(MIN_DPI, Math.min(MAX_DPI, quantized));
+    }
+
+    private static float displayWidth(PDPage page) {
+        PDRectangle box = page.getCropBox();
+        return page.getRotation() % 180 == 0 ? box.getWidth() : box.getHeight();
+    }
+
+    // Rend la page (ou la reprend du cache) ; null si la page n'existe pas
+    private Image renderAtDpi(Path path, long modified, int page, float dpi) throws IOException {
+        RenderedPageCache.PageKey key = new RenderedPageCache.PageKey(path, modified, page, dpi);
+        Image cached = pageCache.get(key);
+        if (cached != null) return cached;
+
+        // Dessin direct dans un tampon du pool, partagé avec l'image JavaFX : aucune copie
+        Image image = documentCache.withDocument(path, (doc, renderer) ->
+                page < doc.getNumberOfPages() ? imagePool.render(renderer, doc.getPage(page), page, dpi) : null);
+        if (image == null) return null;
+
+        pageCache.put(key, image);
+        return image;
+    }
+
+    // Même chose à la résolution adaptée à une largeur d'affichage (documents pas encore ouverts)
+    private Image renderForWidth(Path path, long modified, int page, double targetWidth) throws IOException {
+        Float dpi = documentCache.withDocument(path, (doc, renderer) ->
+                page < doc.getNumberOfPages() ? dpiFor(displayWidth(doc.getPage(page)), targetWidth) : null);
+        return dpi != null ? renderAtDpi(path, modified, page, dpi) : null;
+    }
+
+    /* =========================
+       PRÉCHARGEMENT
+       ========================= */
+
+    // Candidatures autour de la sélection dans le tableau
+    public void setNeighbours(List<Candidature> neighbours) {
+        this.neighbours = List.copyOf(neighbours);
+    }
+
+    // Une page de marge au-dessus et au-dessous des pages visibles, documents voisins
+    // de la liste, premier document des lignes voisines : rendus en basse priorité,
+    // annulés dès que les pages visibles changent
+    private void prefetch(Path path, int first, int last) {
+        if (path == null) return;
+        renderScheduler.cancelAll(PREFETCH);
+        long modified = currentPdfModified;
+        double targetWidth = renderWidth();
+        if (last + 1 < pageCount) prefetchPage("page+1", path, modified, last + 1, targetWidth);
+        if (first > 0) prefetchPage("page-1", path, modified, first - 1, targetWidth);
+
+        List<DocumentFile> docs = pdfListView.getItems();
+        int index = pdfListView.getSelectionModel().getSelectedIndex();
+        if (index >= 0) {
+            if (index + 1 < docs.size()) prefetchFirstPage("doc+1", docs.get(index + 1).getFichier(), targetWidth);
+            if (index > 0) prefetchFirstPage("doc-1", docs.get(index - 1).getFichier(), targetWidth);
+        }
+
+        for (int i = 0; i < neighbours.size(); i++) {
+            Candidature c = neighbours.get(i);
+            String channel = "row" + i;
+            // Seulement si les documents sont déjà en mémoire : le préchargement ne doit pas les lire
+            if (!c.isDocumentsLoaded()) continue;
+            c.getDocuments().stream()
+                    .min(NEWEST_FIRST)
+                    .ifPresent(doc -> prefetchFirstPage(channel, doc.getFichier(), targetWidth));
+        }
+    }
+
+    private void prefetchPage(String channel, Path path, long modified, int page, double targetWidth) {
+        float dpi = dpiFor(pageWidths[page], targetWidth);
+        renderScheduler.submit(PREFETCH + channel, PdfRenderScheduler.Priority.PREFETCH,
+                () -> renderAtDpi(path, modified, page, dpi));
+    }
+
+    private void prefetchFirstPage(String channel, Path path, double targetWidth) {
+        if (path == null) return;
+        renderScheduler.submit(PREFETCH + channel, PdfRenderScheduler.Priority.PREFETCH,
+                () -> renderFirstPage(path, targetWidth));
+    }
+
+    private Image renderFirstPage(Path path, double targetWidth) {
+        try {
+            if (path == null || !Files.exists(path)) return null;
+            return renderForWidth(path, Files.getLastModifiedTime(path).toMillis(), 0, targetWidth);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /* =========================
@@ -188,6 +684,28 @@ public class PdfViewerPane extends BorderPane {
        ========================= */
     private void closePdf() {
         renderVersion.incrementAndGet();
-        imageView.setImage(null);
+        renderScheduler.cancelAll(PAGE_CHANNEL);
+        renderScheduler.cancelAll(PREFETCH);
+        pageList.getItems().clear();
+        firstVisible = -1;
+        lastVisible = -1;
+        thumbnailStrip.getItems().clear();
+    }
+
+    // Document supprimé ou remplacé sur disque
+    public void forget(Path path) {
+        if (path == null) return;
+        documentCache.invalidate(path);
+        pageCache.invalidate(path);
+    }
+
+    // Fermeture de l'application : libère les PDF encore ouverts
+    public void close() {
+        renderVersion.incrementAndGet();
+        layoutReader.shutdownNow();
+        renderScheduler.close();
+        documentCache.close();
+        pageCache.clear();
+        imagePool.clear();
     }
 }
@@ -1,38 +1,104 @@
 package app.controller;
 
 import app.model.Candidature;
-import app.model.DocumentFile;
+import app.model.StatutCandidature;
+import app.repository.AsyncSaveWriter;
+import app.repository.CandidatureRepositories;
 import app.repository.CandidatureRepository;
+import app.service.CandidatureMatcher;
+import app.service.DocumentHashIndex;
+import app.service.FacetIndex;
 import app.service.FileSystemService;
+import app.service.FullTextSearchService;
+import app.service.TrigramIndex;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.scene.control.TableView;
 import lombok.Getter;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class MainController {
 
     @Getter
     private final ObservableList<Candidature> candidatures;
-    private final CandidatureRepository repository = new CandidatureRepository();
+    @Getter
+    private final CandidatureRepository repository = CandidatureRepositories.fromConfig();
+    @Getter
+    private final AsyncSaveWriter saveWriter = new AsyncSaveWriter(repository::save);
+    @Getter
+    private final TrigramIndex searchIndex = new TrigramIndex();
+    @Getter
+    private final FacetIndex facets = new FacetIndex();
+    // Entreprises et postes reconnus dans le texte des PDF importés sans candidature sélectionnée
+    @Getter
+    private final CandidatureMatcher matcher = new CandidatureMatcher();
+    // Synchronisée : aussi consultée par l'import (doublons) hors du thread JavaFX
+    private final Map<String, Candidature> byId = Collections.synchronizedMap(new HashMap<>());
+    // Empreinte de chaque document stocké, pour reconnaître un PDF déjà importé
+    @Getter
+    private final DocumentHashIndex documentHashes =
+            new DocumentHashIndex(FileSystemService.getRoot().resolve(".cache").resolve("document-hashes.bin"), byId::get);
+    // Texte des PDF retrouvé par empreinte dans le cache d'extraction
+    @Getter
+    private final FullTextSearchService fullText =
+            new FullTextSearchService(FileSystemService.getRoot().resolve(".cache"), documentHashes);
+    // Incrémenté à chaque ajout, suppression ou modification : invalide les résultats mis en cache
+    @Getter
+    private long revision;
 
     public MainController(TableView<Candidature> table) {
         FileSystemService.init();
+        // Les documents (et la résolution de leurs chemins) sont chargés au premier accès
         candidatures = FXCollections.observableArrayList(repository.load());
 
-        // 🔴 RESYNC DES CHEMINS
-        for (Candidature c : candidatures) {
-            if (c.getDossier() == null) continue;
-
-            for (DocumentFile doc : c.getDocuments()) {
-                if (doc.getFichier() != null) {
-                    doc.setFichier(
-                            c.getDossier().resolve(doc.getFichier().getFileName())
-                    );
+        // Index de recherche tenu à jour au fil des ajouts et suppressions
+        searchIndex.addAll(candidatures);
+        facets.addAll(candidatures);
+        matcher.addAll(candidatures);
+        candidatures.forEach(c -> byId.put(c.getId(), c));
+        candidatures.addListener((ListChangeListener<Candidature>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated()) continue;
+                revision++;
+                for (Candidature c : change.getRemoved()) {
+                    searchIndex.remove(c);
+                    facets.remove(c);
+                    matcher.remove(c);
+                    byId.remove(c.getId());
+                }
+                for (Candidature c : change.getAddedSubList()) {
+                    searchIndex.add(c);
+                    facets.add(c);
+                    matcher.add(c);
+                    byId.put(c.getId(), c);
+                }
+                // Supprimée pour de bon (pas simplement remplacée) : son texte aussi
+                for (Candidature c : change.getRemoved()) {
+                    if (!byId.containsKey(c.getId())) {
+                        fullText.removeCandidature(c);
+                        documentHashes.removeCandidature(c);
+                    }
                 }
             }
-        }
+        });
+
+        // Empreintes d'abord : le texte des PDF est ensuite retrouvé par empreinte dans le cache,
+        // les documents jamais analysés sont extraits en fond
+        documentHashes.startBackfill(new ArrayList<>(candidatures));
+        fullText.startBackfill(new ArrayList<>(candidatures));
+        Candidature.setDocumentsLoadedListener(c -> {
+            documentHashes.documentsLoaded(c);
+            fullText.documentsLoaded(c);
+        });
 
         sort();
         table.setItems(candidatures);
@@ -50,8 +116,59 @@ public class MainController {
         save();
     }
 
+    public Candidature findById(String id) {
+        return byId.get(id);
+    }
+
+    // Filtre statut / mois / entreprise exécuté par le stockage (colonnes indexées avec H2).
+    // Candidatures modifiées depuis la dernière sauvegarde : évaluées en mémoire, le stockage ne les a pas encore
+    public List<Candidature> findByFilter(StatutCandidature statut, Integer mois, String entreprise) {
+        Set<String> ids = repository.findIds(statut, mois, entreprise);
+        List<Candidature> result = new ArrayList<>();
+        for (Candidature c : candidatures) {
+            boolean match = c.isDirty()
+                    ? CandidatureRepository.matches(c, statut, mois, entreprise)
+                    : ids.contains(c.getId());
+            if (match) result.add(c);
+        }
+        return result;
+    }
+
+    // Candidature modifiée en place (entreprise, poste, notes, statut, documents...)
+    public void update(Candidature c) {
+        searchIndex.update(c);
+        facets.update(c);
+        matcher.update(c);
+        revision++;
+        save();
+    }
+
+    // Ne bloque jamais le thread UI : l'écriture disque est faite par saveWriter,
+    // sur des copies figées (seules les candidatures modifiées sont recopiées)
     public void save() {
-        repository.save(candidatures);
+        List<Candidature> snapshot = new ArrayList<>(candidatures.size());
+        for (Candidature c : candidatures) snapshot.add(c.snapshot());
+        saveWriter.requestSave(snapshot);
+    }
+
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        return saveWriter.awaitFlush(timeout, unit);
+    }
+
+    public void close() {
+        try {
+            if (!flush(10, TimeUnit.SECONDS)) {
+                Throwable error = saveWriter.getLastError();
+                System.err.println("Sauvegarde non terminée à la fermeture"
+                        + (error != null ? " : " + error.getMessage() : ""));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveWriter.close();
+        fullText.close();
+        documentHashes.close();
+        repository.close();
     }
 
     private void sort() {
@@ -1,6 +1,8 @@
 package app.model;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -9,34 +11,339 @@ import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Getter
 @Setter
 @NoArgsConstructor
-@AllArgsConstructor
 public class Candidature {
 
-    private String id;
+    // Identifiant UUID stocké sur deux longs ; idTexte pour un ancien id non UUID
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long idMsb;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long idLsb;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean idUuid;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String idTexte;
+    // Forme texte de l'UUID, construite au premier getId() puis réutilisée (clés de maps, index)
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient String idCache;
+
     private String entreprise;
     private String poste;
     private LocalDate dateEnvoi;
     private StatutCandidature statut;
     private Path dossier;
+    @Getter(AccessLevel.NONE)
     private List<DocumentFile> documents = new ArrayList<>();
 
     // === Nouveaux champs ===
     private String notes;
     private LocalDate dateRelance;
 
+    // === Suivi des modifications (non persisté) ===
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile long modifications;
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile long savedVersion = -1;
+
+    // === Chargement paresseux des documents (non persisté) ===
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile Supplier<List<DocumentFile>> documentLoader;
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile boolean documentsResolved;
+    // Nombre de documents connu sans les charger (null = inconnu)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Integer documentCount;
+
+    // === Copie figée pour la sauvegarde en arrière-plan (non persisté) ===
+    // Sur une copie : la candidature d'origine, marquée propre en même temps qu'elle
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Candidature source;
+
+    // Prévenu quand des documents différés viennent d'être lus (index tenus à jour sans tout charger)
+    private static volatile Consumer<Candidature> documentsLoadedListener;
+
     public Candidature(String entreprise, String poste) {
-        this.id = UUID.randomUUID().toString();
-        this.entreprise = entreprise;
-        this.poste = poste;
+        storeId(UUID.randomUUID().toString());
+        this.entreprise = StringPool.intern(entreprise);
+        this.poste = StringPool.intern(poste);
         this.statut = StatutCandidature.EN_ATTENTE;
     }
 
+    public Candidature(String id, String entreprise, String poste, LocalDate dateEnvoi,
+                       StatutCandidature statut, Path dossier, List<DocumentFile> documents,
+                       String notes, LocalDate dateRelance) {
+        storeId(id);
+        this.entreprise = StringPool.intern(entreprise);
+        this.poste = StringPool.intern(poste);
+        this.dateEnvoi = dateEnvoi;
+        this.statut = statut;
+        this.dossier = dossier;
+        this.documents = documents;
+        this.notes = notes;
+        this.dateRelance = dateRelance;
+    }
+
     public void ajouterDocument(DocumentFile doc) {
-        documents.add(doc);
+        doc.attach(this);
+        getDocuments().add(doc);
+        touch();
+    }
+
+    public boolean retirerDocument(DocumentFile doc) {
+        boolean removed = getDocuments().remove(doc);
+        if (removed) touch();
+        return removed;
+    }
+
+    /* =========================
+       DOCUMENTS (chargés au premier accès)
+       ========================= */
+    @JsonIgnore
+    public List<DocumentFile> getDocuments() {
+        if (!documentsResolved) resolveDocuments();
+        return documents;
+    }
+
+    // Pour l'écriture : documents en mémoire, ou relus sans être conservés s'ils sont encore différés
+    @JsonProperty("documents")
+    public List<DocumentFile> peekDocuments() {
+        if (documentsResolved) return documents;
+        Supplier<List<DocumentFile>> loader = documentLoader;
+        if (loader != null) return loader.get();
+        List<DocumentFile> docs = documents;
+        return docs != null ? docs : List.of();
+    }
+
+    // Les documents seront lus par le loader au premier accès ; documentCount sert d'ici là
+    public void setLazyDocuments(Supplier<List<DocumentFile>> loader) {
+        this.documentLoader = loader;
+        this.documents = null;
+        this.documentsResolved = false;
+    }
+
+    public static void setDocumentsLoadedListener(Consumer<Candidature> listener) {
+        documentsLoadedListener = listener;
+    }
+
+    @JsonIgnore
+    public boolean isDocumentsLoaded() {
+        return documentsResolved;
+    }
+
+    public int getDocumentCount() {
+        List<DocumentFile> docs = documents;
+        if (docs != null) return docs.size();
+        if (documentCount != null) return documentCount;
+        return getDocuments().size();
+    }
+
+    public void setDocumentCount(int documentCount) {
+        this.documentCount = documentCount;
+    }
+
+    private synchronized void resolveDocuments() {
+        if (documentsResolved) return;
+
+        boolean lazy = documentLoader != null;
+        // Copie à l'écriture : la sauvegarde en arrière-plan peut parcourir la liste d'un original
+        List<DocumentFile> docs = lazy ? new CopyOnWriteArrayList<>(documentLoader.get())
+                : documents != null ? new CopyOnWriteArrayList<>(documents) : new CopyOnWriteArrayList<>();
+
+        // Chemins relatifs au dossier, résolus à la demande (sans rendre la candidature « modifiée »)
+        for (DocumentFile doc : docs) {
+            doc.attach(this);
+        }
+
+        documents = docs;
+        documentLoader = null;
+        documentsResolved = true;
+
+        // Copies de sauvegarde exclues : seul l'original compte
+        Consumer<Candidature> listener = documentsLoadedListener;
+        if (lazy && source == null && listener != null) listener.accept(this);
+    }
+
+    /* =========================
+       SETTERS (marquent la candidature modifiée)
+       ========================= */
+    public String getId() {
+        if (!idUuid) return idTexte;
+        String id = idCache;
+        if (id == null) idCache = id = new UUID(idMsb, idLsb).toString();
+        return id;
+    }
+
+    public void setId(String id) {
+        if (!Objects.equals(getId(), id)) touch();
+        storeId(id);
+    }
+
+    private void storeId(String id) {
+        idUuid = false;
+        idTexte = id;
+        idCache = null;
+        if (id == null || id.length() != 36) return;
+        try {
+            UUID uuid = UUID.fromString(id);
+            // Forme canonique uniquement, pour que getId() rende exactement la même chaîne
+            if (uuid.toString().equals(id)) {
+                idMsb = uuid.getMostSignificantBits();
+                idLsb = uuid.getLeastSignificantBits();
+                idUuid = true;
+                idTexte = null;
+            }
+        } catch (IllegalArgumentException ignored) {}
+    }
+
+    public void setEntreprise(String entreprise) {
+        if (!Objects.equals(this.entreprise, entreprise)) touch();
+        this.entreprise = StringPool.intern(entreprise);
+    }
+
+    public void setPoste(String poste) {
+        if (!Objects.equals(this.poste, poste)) touch();
+        this.poste = StringPool.intern(poste);
+    }
+
+    public void setDateEnvoi(LocalDate dateEnvoi) {
+        if (!Objects.equals(this.dateEnvoi, dateEnvoi)) touch();
+        this.dateEnvoi = dateEnvoi;
+    }
+
+    public void setStatut(StatutCandidature statut) {
+        if (this.statut != statut) touch();
+        this.statut = statut;
+    }
+
+    public void setDossier(Path dossier) {
+        if (!Objects.equals(this.dossier, dossier)) touch();
+        this.dossier = dossier;
+    }
+
+    @JsonProperty("documents")
+    public void setDocuments(List<DocumentFile> documents) {
+        touch();
+        this.documents = documents != null ? documents : new ArrayList<>();
+        this.documentLoader = null;
+        this.documentsResolved = false;
+    }
+
+    public void setNotes(String notes) {
+        if (!Objects.equals(this.notes, notes)) touch();
+        this.notes = notes;
+    }
+
+    public void setDateRelance(LocalDate dateRelance) {
+        if (!Objects.equals(this.dateRelance, dateRelance)) touch();
+        this.dateRelance = dateRelance;
+    }
+
+    /* =========================
+       COPIE POUR LA SAUVEGARDE
+       ========================= */
+
+    /**
+     * Ce que l'écrivain de sauvegarde doit recevoir, à prendre sur le thread JavaFX.
+     * Candidature modifiée : copie indépendante (documents compris) de l'état courant,
+     * sérialisée pendant que l'original continue d'être modifié, puis abandonnée.
+     * Candidature déjà sauvegardée : l'original lui-même, sans copie (le stockage ne le relit
+     * que pour une réécriture complète ; sa liste de documents supporte la lecture concurrente).
+     */
+    public Candidature snapshot() {
+        // Id attribué ici plutôt que par le stockage, qui ne voit que la copie
+        if (getId() == null) setId(UUID.randomUUID().toString());
+        if (!isDirty()) return this;
+        // Documents sans chargeur : simple résolution des chemins, sans lecture disque
+        if (documentLoader == null) getDocuments();
+
+        long version = getVersion();
+        Candidature copy = new Candidature();
+        copy.idMsb = idMsb;
+        copy.idLsb = idLsb;
+        copy.idUuid = idUuid;
+        copy.idTexte = idTexte;
+        copy.idCache = idCache;
+        copy.entreprise = entreprise;
+        copy.poste = poste;
+        copy.dateEnvoi = dateEnvoi;
+        copy.statut = statut;
+        copy.dossier = dossier;
+        copy.notes = notes;
+        copy.dateRelance = dateRelance;
+        copy.documentCount = documentCount;
+
+        Supplier<List<DocumentFile>> loader = documentLoader;
+        if (loader != null) {
+            // Documents pas encore lus : la copie les lira elle-même si le stockage en a besoin
+            copy.setLazyDocuments(loader);
+        } else {
+            List<DocumentFile> docs = new ArrayList<>(documents.size());
+            for (DocumentFile doc : documents) docs.add(doc.copyFor(copy));
+            copy.documents = docs;
+            copy.documentsResolved = true;
+        }
+
+        copy.modifications = version;
+        copy.savedVersion = savedVersion;
+        copy.source = this;
+        return copy;
+    }
+
+    // Candidature d'origine d'une copie de sauvegarde (elle-même sinon)
+    public Candidature original() {
+        Candidature original = source;
+        return original != null ? original : this;
+    }
+
+    /* =========================
+       DIRTY TRACKING
+       ========================= */
+
+    // Aussi appelé par les documents rattachés à chacune de leurs modifications
+    void touch() {
+        modifications++;
+    }
+
+    // Version courante : compteur toujours croissant (candidature et documents rattachés)
+    @JsonIgnore
+    public long getVersion() {
+        return modifications;
+    }
+
+    @JsonIgnore
+    public boolean isDirty() {
+        return getVersion() != savedVersion;
+    }
+
+    // Marque comme persistée la version lue avant la sérialisation
+    public void markClean(long version) {
+        savedVersion = version;
+        Candidature original = source;
+        if (original != null) original.markClean(version);
     }
 }
@@ -1,25 +1,110 @@
 package app.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.*;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 @Data
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class DocumentFile {
 
-    private Path fichier;
+    // Nom du fichier relatif au dossier de la candidature (chemin complet si pas de dossier)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String fichier;
 //    private DocumentType type;
     private LocalDateTime dateMail;
     private String nom;
 
+    // Candidature propriétaire : fournit le dossier pour résoudre le chemin à la demande
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Candidature owner;
+
+    public DocumentFile(Path fichier, LocalDateTime dateMail, String nom) {
+        this.fichier = fichier != null ? fichier.toString() : null;
+        this.dateMail = dateMail;
+        this.nom = nom;
+    }
+
+    public Path getFichier() {
+        if (fichier == null) return null;
+        Path dossier = owner != null ? owner.getDossier() : null;
+        return dossier != null ? dossier.resolve(fichier) : Path.of(fichier);
+    }
+
+    public void setFichier(Path fichier) {
+        if (!Objects.equals(getFichier(), fichier)) touch();
+        this.fichier = encode(fichier);
+    }
+
+    // Rattache le document à sa candidature : un chemin dans le dossier devient relatif
+    // (🔴 RESYNC : le document suit le dossier, même renommé ou déplacé)
+    void attach(Candidature candidature) {
+        this.owner = candidature;
+        Path dossier = candidature.getDossier();
+        if (fichier == null || dossier == null) return;
+
+        Path path = Path.of(fichier);
+        if (!path.isAbsolute()) return;
+        if (path.startsWith(dossier)) {
+            fichier = dossier.relativize(path).toString();
+            return;
+        }
+        // Ancien chemin absolu d'un dossier renommé ou déplacé depuis : le fichier s'y retrouve sous son nom.
+        // Sinon (fichier rangé ailleurs), le chemin absolu est conservé
+        Path name = path.getFileName();
+        if (name != null && !Files.exists(path) && Files.exists(dossier.resolve(name))) {
+            fichier = name.toString();
+        }
+    }
+
+    // Copie rattachée à la copie de sa candidature (voir Candidature#snapshot)
+    DocumentFile copyFor(Candidature candidature) {
+        DocumentFile copy = new DocumentFile();
+        copy.fichier = fichier;
+        copy.dateMail = dateMail;
+        copy.nom = nom;
+        copy.owner = candidature;
+        return copy;
+    }
+
+    private String encode(Path path) {
+        if (path == null) return null;
+        Path dossier = owner != null ? owner.getDossier() : null;
+        if (dossier != null && path.isAbsolute() && path.startsWith(dossier)) {
+            return dossier.relativize(path).toString();
+        }
+        return path.toString();
+    }
+
+    public void setDateMail(LocalDateTime dateMail) {
+        if (!Objects.equals(this.dateMail, dateMail)) touch();
+        this.dateMail = dateMail;
+    }
+
+    public void setNom(String nom) {
+        if (!Objects.equals(this.nom, nom)) touch();
+        this.nom = nom;
+    }
+
+    // Modification comptée sur la candidature propriétaire (un document pas encore rattaché
+    // le sera par ajouterDocument, qui compte alors l'ajout)
+    private void touch() {
+        Candidature candidature = owner;
+        if (candidature != null) candidature.touch();
+    }
+
+    // Sur le chemin stocké (relatif au dossier) : stable quand le dossier est renommé
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -29,7 +114,7 @@ public class DocumentFile {
 
     @Override
     public int hashCode() {
-        return Objects.hash(fichier);
+        return Objects.hashCode(fichier);
     }
 
     @Override
@@ -0,0 +1,25 @@
+package app.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool d'internement des chaînes très répétées (entreprise, poste) :
+ * une seule instance par valeur, quel que soit le nombre de candidatures qui la portent.
+ */
+public final class StringPool {
+
+    private static final ConcurrentHashMap<String, String> POOL = new ConcurrentHashMap<>();
+
+    private StringPool() {
+    }
+
+    public static String intern(String value) {
+        if (value == null) return null;
+        String existing = POOL.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    public static int size() {
+        return POOL.size();
+    }
+}
@@ -0,0 +1,208 @@
+package app.repository;
+
+import app.model.Candidature;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Écrivain de sauvegarde en arrière-plan.
+ * Le thread JavaFX ne fait que signaler une demande ; les demandes rapprochées
+ * sont fusionnées et seule la dernière liste est écrite.
+ * La liste reçue vient de Candidature#snapshot : copies figées des candidatures modifiées,
+ * sérialisées ici pendant que le thread JavaFX continue de modifier les originaux.
+ * Le lot n'est plus référencé une fois écrit.
+ * Une écriture en échec reste à faire : elle est retentée et flush() la signale.
+ */
+public class AsyncSaveWriter implements AutoCloseable {
+
+    // Fenêtre de regroupement des rafales de sauvegardes
+    private static final long COALESCE_DELAY_MS = 100;
+    // Pause avant de retenter une écriture en échec (disque plein, fichier verrouillé...)
+    private static final long RETRY_DELAY_MS = 2000;
+
+    private final Consumer<List<Candidature>> writer;
+    private final Thread thread;
+    private final Object lock = new Object();
+
+    private List<Candidature> pending;
+    private long requested;
+    private long written;
+    // Dernière demande dont l'écriture a échoué (0 : aucune)
+    private long failed;
+    private int queueDepth;
+    private boolean closed;
+    private boolean flushRequested;
+
+    // === Métriques ===
+    private volatile long writeCount;
+    private volatile long coalescedCount;
+    private volatile long lastLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private volatile Throwable lastError;
+
+    public AsyncSaveWriter(Consumer<List<Candidature>> writer) {
+        this.writer = writer;
+        this.thread = new Thread(this::run, "candidatures-save-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /* =========================
+       SIGNAL (thread UI)
+       ========================= */
+    public void requestSave(List<Candidature> snapshot) {
+        synchronized (lock) {
+            if (closed) throw new IllegalStateException("Écrivain de sauvegarde fermé");
+            if (pending != null) coalescedCount++;
+            pending = snapshot;
+            requested++;
+            queueDepth++;
+            lock.notifyAll();
+        }
+    }
+
+    /* =========================
+       FLUSH / ATTENTE
+       ========================= */
+    public void flush() throws InterruptedException {
+        awaitFlush(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    // Faux si le délai expire ou si l'écriture des dernières demandes a échoué (voir getLastError)
+    public boolean awaitFlush(long timeout, TimeUnit unit) throws InterruptedException {
+        long timeoutNanos = unit.toNanos(timeout);
+        long start = System.nanoTime();
+        synchronized (lock) {
+            long target = requested;
+            // Écourte la fenêtre de regroupement en cours
+            flushRequested = true;
+            lock.notifyAll();
+            while (written < target) {
+                if (failed >= target || !thread.isAlive()) return false;
+                long remaining = timeoutNanos - (System.nanoTime() - start);
+                if (remaining <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(lock, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(200)));
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* =========================
+       BOUCLE D'ÉCRITURE
+       ========================= */
+    private void run() {
+        while (true) {
+            List<Candidature> batch;
+            long generation;
+
+            synchronized (lock) {
+                try {
+                    while (pending == null && !closed) lock.wait();
+                    if (pending == null) return;
+
+                    // Laisse la rafale se terminer avant d'écrire (sauf fermeture ou flush)
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(COALESCE_DELAY_MS);
+                    while (!closed && !flushRequested) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) break;
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    }
+                    flushRequested = false;
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                batch = pending;
+                generation = requested;
+                pending = null;
+                queueDepth = 0;
+            }
+
+            long start = System.nanoTime();
+            try {
+                writer.accept(batch);
+            } catch (RuntimeException e) {
+                lastError = e;
+                System.err.println("Sauvegarde échouée : " + e.getMessage());
+                e.printStackTrace();
+                synchronized (lock) {
+                    failed = generation;
+                    // Le lot reste à écrire, sauf si une demande plus récente le remplace déjà
+                    if (pending == null) {
+                        pending = batch;
+                        queueDepth++;
+                    }
+                    lock.notifyAll();
+                    // À la fermeture, la dernière tentative a échoué : flush() l'a signalé
+                    if (closed) return;
+                    try {
+                        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETRY_DELAY_MS);
+                        while (!closed) {
+                            long remaining = deadline - System.nanoTime();
+                            if (remaining <= 0) break;
+                            TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                        }
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+                continue;
+            }
+
+            long latency = System.nanoTime() - start;
+            lastLatencyNanos = latency;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+            writeCount++;
+            lastError = null;
+
+            synchronized (lock) {
+                written = generation;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /* =========================
+       MÉTRIQUES
+       ========================= */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return queueDepth;
+        }
+    }
+
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    public long getLastLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLatencyNanos);
+    }
+
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos);
+    }
+
+    public Throwable getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,246 @@
+package app.repository;
+
+import app.model.Candidature;
+import app.model.DocumentFile;
+import app.model.StatutCandidature;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshot binaire compact de la liste des candidatures, écrit à côté du JSON.
+ * Chaînes préfixées par leur longueur, dates en jours epoch, chemins relatifs
+ * (dossier relatif à la racine, fichiers relatifs au dossier).
+ * Lu en un bloc puis décodé en une seule passe ; le JSON reste le format d'échange.
+ * La section documents de chaque candidature est préfixée par sa taille : elle est
+ * sautée au chargement, gardée sous forme d'octets et décodée au premier accès.
+ * Aucun accès au fichier après la lecture : il peut être remplacé à la sauvegarde suivante.
+ */
+public class BinarySnapshotCodec {
+
+    private static final int MAGIC = 0x434E4442; // "CNDB"
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int NULL_DAY = Integer.MIN_VALUE;
+    private static final long NULL_SECONDS = Long.MIN_VALUE;
+
+    private static final byte PATH_NULL = 0;
+    private static final byte PATH_RELATIVE = 1;
+    private static final byte PATH_ABSOLUTE = 2;
+
+    // Empreinte du JSON source : le binaire est périmé dès qu'elle ne correspond plus
+    public record SourceStamp(long lastModified, long length) {
+
+        public static SourceStamp of(Path json) throws IOException {
+            return new SourceStamp(Files.getLastModifiedTime(json).toMillis(), Files.size(json));
+        }
+    }
+
+    private final Path file;
+    private final Path root;
+
+    public BinarySnapshotCodec(Path file, Path root) {
+        this.file = file;
+        this.root = root;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /* =========================
+       ÉCRITURE
+       ========================= */
+    public void write(List<Candidature> list, SourceStamp stamp) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (OutputStream os = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(stamp.lastModified());
+            out.writeLong(stamp.length());
+            out.writeInt(list.size());
+
+            ByteArrayOutputStream section = new ByteArrayOutputStream();
+            DataOutputStream docsOut = new DataOutputStream(section);
+
+            for (Candidature c : list) {
+                writeString(out, c.getId());
+                writeString(out, c.getEntreprise());
+                writeString(out, c.getPoste());
+                writeDay(out, c.getDateEnvoi());
+                out.writeByte(c.getStatut() != null ? c.getStatut().ordinal() : -1);
+                writePath(out, root, c.getDossier());
+                writeString(out, c.getNotes());
+                writeDay(out, c.getDateRelance());
+
+                List<DocumentFile> docs = c.peekDocuments();
+                section.reset();
+                for (DocumentFile doc : docs) {
+                    writePath(docsOut, c.getDossier(), doc.getFichier());
+                    writeString(docsOut, doc.getNom());
+                    writeDateTime(docsOut, doc.getDateMail());
+                }
+                docsOut.flush();
+                out.writeInt(docs.size());
+                out.writeInt(section.size());
+                section.writeTo(out);
+            }
+        }
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* =========================
+       LECTURE (une passe)
+       ========================= */
+
+    // Retourne null si le binaire est absent, illisible ou périmé par rapport au JSON
+    public List<Candidature> read(SourceStamp expected) {
+        if (!Files.exists(file)) return null;
+
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+
+            if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) return null;
+            SourceStamp stamp = new SourceStamp(buf.getLong(), buf.getLong());
+            if (!stamp.equals(expected)) return null;
+
+            StatutCandidature[] statuts = StatutCandidature.values();
+            int count = buf.getInt();
+            List<Candidature> list = new ArrayList<>(count);
+            // Sections documents mises bout à bout, sans les en-têtes déjà décodés
+            ByteArrayOutputStream sections = new ByteArrayOutputStream();
+            int[] offsets = new int[count];
+            int[] lengths = new int[count];
+            int[] docCounts = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                Candidature c = new Candidature();
+                c.setId(readString(buf));
+                c.setEntreprise(readString(buf));
+                c.setPoste(readString(buf));
+                c.setDateEnvoi(readDay(buf));
+                byte statut = buf.get();
+                c.setStatut(statut >= 0 ? statuts[statut] : null);
+                c.setDossier(readPath(buf, root));
+                c.setNotes(readString(buf));
+                c.setDateRelance(readDay(buf));
+
+                // Documents : on saute la section, décodée au premier accès
+                docCounts[i] = buf.getInt();
+                lengths[i] = buf.getInt();
+                offsets[i] = sections.size();
+                sections.write(buf.array(), buf.position(), lengths[i]);
+                buf.position(buf.position() + lengths[i]);
+                list.add(c);
+            }
+
+            byte[] documents = sections.toByteArray();
+            for (int i = 0; i < count; i++) {
+                Candidature c = list.get(i);
+                Path dossier = c.getDossier();
+                ByteBuffer section = ByteBuffer.wrap(documents, offsets[i], lengths[i]).slice();
+                int docCount = docCounts[i];
+                c.setDocumentCount(docCount);
+                c.setLazyDocuments(() -> readDocuments(section.duplicate(), docCount, dossier));
+            }
+            return list;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Snapshot binaire illisible, repli sur le JSON : " + e);
+            return null;
+        }
+    }
+
+    private static List<DocumentFile> readDocuments(ByteBuffer buf, int count, Path dossier) {
+        List<DocumentFile> docs = new ArrayList<>(count);
+        for (int d = 0; d < count; d++) {
+            DocumentFile doc = new DocumentFile();
+            doc.setFichier(readPath(buf, dossier));
+            doc.setNom(readString(buf));
+            doc.setDateMail(readDateTime(buf));
+            docs.add(doc);
+        }
+        return docs;
+    }
+
+    /* =========================
+       ENCODAGE
+       ========================= */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDay(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeInt(date != null ? (int) date.toEpochDay() : NULL_DAY);
+    }
+
+    private static LocalDate readDay(ByteBuffer buf) {
+        int day = buf.getInt();
+        return day != NULL_DAY ? LocalDate.ofEpochDay(day) : null;
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime dt) throws IOException {
+        if (dt == null) {
+            out.writeLong(NULL_SECONDS);
+            return;
+        }
+        out.writeLong(dt.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(dt.getNano());
+    }
+
+    private static LocalDateTime readDateTime(ByteBuffer buf) {
+        long seconds = buf.getLong();
+        if (seconds == NULL_SECONDS) return null;
+        return LocalDateTime.ofEpochSecond(seconds, buf.getInt(), ZoneOffset.UTC);
+    }
+
+    private static void writePath(DataOutputStream out, Path base, Path path) throws IOException {
+        if (path == null) {
+            out.writeByte(PATH_NULL);
+        } else if (base != null && path.startsWith(base)) {
+            out.writeByte(PATH_RELATIVE);
+            writeString(out, base.relativize(path).toString());
+        } else {
+            out.writeByte(PATH_ABSOLUTE);
+            writeString(out, path.toString());
+        }
+    }
+
+    private static Path readPath(ByteBuffer buf, Path base) {
+        byte kind = buf.get();
+        if (kind == PATH_NULL) return null;
+        String value = readString(buf);
+        if (kind == PATH_RELATIVE && base != null) return base.resolve(value);
+        return Path.of(value);
+    }
+}
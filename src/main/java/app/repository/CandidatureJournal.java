@@ -0,0 +1,142 @@
+package app.repository;
+
+import app.model.Candidature;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journal append-only des modifications de candidatures.
+ * Une ligne JSON par changement : PUT (état complet d'une candidature) ou DEL (suppression par id).
+ */
+public class CandidatureJournal {
+
+    public static final String PUT = "PUT";
+    public static final String DEL = "DEL";
+
+    public record Entry(String op, String id, Candidature candidature) {
+    }
+
+    private final Path file;
+    private final ObjectMapper mapper;
+
+    private int entryCount;
+
+    public CandidatureJournal(Path file, ObjectMapper mapper) {
+        this.file = file;
+        this.mapper = mapper;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public long size() {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /* =========================
+       ÉCRITURE
+       ========================= */
+    public void append(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) return;
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (Entry entry : entries) {
+            buffer.write(mapper.writeValueAsBytes(entry));
+            buffer.write('\n');
+        }
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        }
+        entryCount += entries.size();
+    }
+
+    public void truncate() throws IOException {
+        Files.deleteIfExists(file);
+        entryCount = 0;
+    }
+
+    /* =========================
+       REJEU
+       ========================= */
+    public void replay(Map<String, Candidature> byId) throws IOException {
+        entryCount = 0;
+        if (!Files.exists(file)) return;
+
+        // Lecture par octets : la position de la dernière ligne valide sert à couper une fin tronquée
+        byte[] content = Files.readAllBytes(file);
+        int start = 0;
+        int lineNumber = 0;
+        while (start < content.length) {
+            int end = start;
+            while (end < content.length && content[end] != '\n') end++;
+            int next = Math.min(end + 1, content.length);
+            lineNumber++;
+
+            String line = new String(content, start, end - start, StandardCharsets.UTF_8);
+            if (!line.isBlank()) {
+                Entry entry;
+                try {
+                    entry = mapper.readValue(line, Entry.class);
+                } catch (JsonProcessingException e) {
+                    if (!isBlank(content, next)) {
+                        // Ligne corrompue au milieu : la suite s'appliquerait à un état faux, le journal est conservé tel quel
+                        throw new IOException("Journal corrompu ligne " + lineNumber + " (" + file + ") : "
+                                + e.getOriginalMessage(), e);
+                    }
+                    // Dernière ligne tronquée (arrêt brutal pendant l'écriture) : coupée pour les prochains ajouts
+                    System.err.println("Dernière entrée du journal tronquée, ignorée : " + e.getOriginalMessage());
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.truncate(start);
+                    }
+                    return;
+                }
+
+                if (PUT.equals(entry.op()) && entry.candidature() != null) {
+                    byId.put(entry.id(), entry.candidature());
+                } else if (DEL.equals(entry.op())) {
+                    byId.remove(entry.id());
+                }
+                entryCount++;
+            }
+            start = next;
+        }
+
+        // Dernière entrée complète mais sans fin de ligne : le prochain ajout ne doit pas s'y coller
+        if (content.length > 0 && content[content.length - 1] != '\n') {
+            Files.write(file, new byte[]{'\n'}, StandardOpenOption.APPEND);
+        }
+    }
+
+    private static boolean isBlank(byte[] content, int from) {
+        for (int i = from; i < content.length; i++) {
+            if (!Character.isWhitespace(content[i])) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package app.repository;
+
+import app.service.FileSystemService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Choix du backend de stockage selon la configuration.
+ * Clé "storage" (json | sharded | h2) lue dans ~/candidatures.properties,
+ * surchargeable par -Dcandidatures.storage. Idem pour "binary" (true | false)
+ * et "dates" (voir DateExtractionService).
+ */
+public class CandidatureRepositories {
+
+    private static final String HOME = System.getProperty("user.home");
+    private static final Path CONFIG = Path.of(HOME, "candidatures.properties");
+
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule()) // support Java 8 Date/Time
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS); // écrire en ISO-8601
+
+    public static ObjectMapper mapper() {
+        return mapper;
+    }
+
+    public static CandidatureRepository fromConfig() {
+        Properties config = loadConfig();
+        String storage = setting(config, "storage", "json");
+
+        JsonCandidatureRepository json = json(Boolean.parseBoolean(setting(config, "binary", "true")));
+
+        return switch (storage.toLowerCase()) {
+            case "json", "journal" -> json;
+            case "sharded" -> new ShardedCandidatureRepository(FileSystemService.getRoot(), mapper, json);
+            case "h2" -> new H2CandidatureRepository(Path.of(HOME, "candidatures-db"), json);
+            default -> throw new IllegalArgumentException("Stockage inconnu : " + storage);
+        };
+    }
+
+    public static JsonCandidatureRepository json(boolean binarySnapshot) {
+        BinarySnapshotCodec binary = binarySnapshot
+                ? new BinarySnapshotCodec(Path.of(HOME, "candidatures.bin"), FileSystemService.getRoot())
+                : null;
+        return new JsonCandidatureRepository(mapper,
+                new File(HOME, "candidatures.json"),
+                Path.of(HOME, "candidatures.journal"),
+                binary);
+    }
+
+    // Autre réglage du même fichier (surchargeable de la même façon)
+    public static String setting(String key, String defaultValue) {
+        return setting(loadConfig(), key, defaultValue);
+    }
+
+    private static String setting(Properties config, String key, String defaultValue) {
+        return System.getProperty("candidatures." + key, config.getProperty(key, defaultValue));
+    }
+
+    private static Properties loadConfig() {
+        Properties config = new Properties();
+        if (Files.exists(CONFIG)) {
+            try (Reader reader = Files.newBufferedReader(CONFIG)) {
+                config.load(reader);
+            } catch (IOException e) {
+                System.err.println("Configuration illisible, valeurs par défaut utilisées : " + e.getMessage());
+            }
+        }
+        return config;
+    }
+}
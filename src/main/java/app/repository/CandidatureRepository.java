@@ -1,50 +1,80 @@
 package app.repository;
 
 import app.model.Candidature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import app.model.StatutCandidature;
 
-import java.io.File;
-import java.io.IOException;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
-public class CandidatureRepository {
+/**
+ * Stockage des candidatures. Implémentations : JSON + journal (défaut), fragmenté par dossier, base H2 embarquée.
+ * Les requêtes ont une implémentation mémoire par défaut ; un backend base de données les exécute dans le store.
+ * Elles portent sur la dernière liste sauvegardée : les modifications en attente sont à compléter en mémoire.
+ */
+public interface CandidatureRepository extends AutoCloseable {
 
-    private static final ObjectMapper mapper = new ObjectMapper()
-            .registerModule(new JavaTimeModule()) // support Java 8 Date/Time
-            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS); // écrire en ISO-8601
+    List<Candidature> load();
 
-    private static final File FILE = new File(System.getProperty("user.home"), "candidatures.json");
-    private static List<Candidature> candidatures = new ArrayList<>();
+    // Persiste la liste ; seules les candidatures modifiées (dirty) sont réécrites
+    void save(List<Candidature> list);
 
-    public static List<Candidature> getAll() {
-        return candidatures;
+    // Dernière liste chargée ou sauvegardée
+    List<Candidature> getAll();
+
+    @Override
+    default void close() {
     }
 
-    public static void add(Candidature c) {
-        candidatures.add(c);
-        save(candidatures);
+    // Liste gardée après une sauvegarde : les copies figées cèdent la place à leurs originaux
+    static List<Candidature> originals(List<Candidature> saved) {
+        List<Candidature> list = new ArrayList<>(saved.size());
+        for (Candidature c : saved) list.add(c.original());
+        return list;
     }
 
-    public static void save(List<Candidature> list) {
-        try {
-            mapper.writeValue(FILE, list);
-        } catch (IOException e) {
-            throw new RuntimeException("Erreur écriture JSON", e);
-        }
+    /* =========================
+       REQUÊTES (sur la dernière liste sauvegardée)
+       ========================= */
+
+    // Vrai si les requêtes sont exécutées par le store (index) plutôt qu'en parcourant getAll()
+    default boolean hasIndexedQueries() {
+        return false;
     }
 
+    // Filtres nuls = ignorés ; mois de 1 à 12 quelle que soit l'année
+    default Set<String> findIds(StatutCandidature statut, Integer mois, String entreprise) {
+        return getAll().stream()
+                .filter(c -> matches(c, statut, mois, entreprise))
+                .map(Candidature::getId)
+                .collect(Collectors.toSet());
+    }
+
+    // Même critère que findIds, pour une candidature pas encore sauvegardée
+    static boolean matches(Candidature c, StatutCandidature statut, Integer mois, String entreprise) {
+        if (statut != null && statut != StatutCandidature.TOUTES && c.getStatut() != statut) return false;
+        if (mois != null && (c.getDateEnvoi() == null || c.getDateEnvoi().getMonthValue() != mois)) return false;
+        return entreprise == null || Objects.equals(entreprise, c.getEntreprise());
+    }
+
+    default long countByStatut(StatutCandidature statut) {
+        return getAll().stream()
+                .filter(c -> c.getStatut() == statut)
+                .count();
+    }
+
+    default Map<String, Long> countByEntreprise() {
+        return getAll().stream()
+                .collect(Collectors.groupingBy(Candidature::getEntreprise, Collectors.counting()));
+    }
 
-    public static List<Candidature> load() {
-        if (!FILE.exists()) return new ArrayList<>();
-        try {
-            candidatures = mapper.readValue(FILE,
-                    mapper.getTypeFactory().constructCollectionType(List.class, Candidature.class));
-            return candidatures;  // <-- retourner la liste
-        } catch (IOException e) {
-            throw new RuntimeException("Erreur lecture JSON", e);
-        }
+    default Map<YearMonth, Long> countByMonth() {
+        return getAll().stream()
+                .filter(c -> c.getDateEnvoi() != null)
+                .collect(Collectors.groupingBy(c -> YearMonth.from(c.getDateEnvoi()), Collectors.counting()));
     }
 }
@@ -0,0 +1,378 @@
+package app.repository;
+
+import app.model.Candidature;
+import app.model.DocumentFile;
+import app.model.StatutCandidature;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Stockage dans une base H2 embarquée (fichier local, pas de serveur).
+ * Mise à jour ligne par ligne des candidatures modifiées ; filtres et statistiques
+ * exécutés en SQL sur des colonnes indexées (statut, mois, entreprise).
+ */
+public class H2CandidatureRepository implements CandidatureRepository {
+
+    private static final String[] SCHEMA = {
+            """
+            CREATE TABLE IF NOT EXISTS candidature (
+                id           VARCHAR(64) PRIMARY KEY,
+                entreprise   VARCHAR(1024),
+                poste        VARCHAR(1024),
+                date_envoi   DATE,
+                annee        INT,
+                mois         INT,
+                statut       VARCHAR(32),
+                dossier      VARCHAR(4096),
+                notes        CHARACTER LARGE OBJECT,
+                date_relance DATE
+            )""",
+            """
+            CREATE TABLE IF NOT EXISTS document (
+                candidature_id VARCHAR(64) NOT NULL,
+                position       INT NOT NULL,
+                fichier        VARCHAR(4096),
+                nom            VARCHAR(1024),
+                date_mail      TIMESTAMP,
+                PRIMARY KEY (candidature_id, position),
+                FOREIGN KEY (candidature_id) REFERENCES candidature(id) ON DELETE CASCADE
+            )""",
+            "CREATE INDEX IF NOT EXISTS idx_candidature_statut ON candidature(statut)",
+            "CREATE INDEX IF NOT EXISTS idx_candidature_mois ON candidature(mois)",
+            "CREATE INDEX IF NOT EXISTS idx_candidature_annee_mois ON candidature(annee, mois)",
+            "CREATE INDEX IF NOT EXISTS idx_candidature_entreprise ON candidature(entreprise)"
+    };
+
+    private final String url;
+    // Ancien stockage JSON, migré si la base est vide
+    private final JsonCandidatureRepository legacy;
+
+    private Connection connection;
+    // Lectures depuis le thread JavaFX (documents différés, filtres de la table) : connexion
+    // et verrou à part, pour ne pas attendre la fin d'une sauvegarde en cours
+    private final Object readLock = new Object();
+    private Connection readConnection;
+    private List<Candidature> candidatures = new ArrayList<>();
+    private final Set<String> storedIds = new HashSet<>();
+
+    public H2CandidatureRepository(Path databaseFile, JsonCandidatureRepository legacy) {
+        this.url = "jdbc:h2:file:" + databaseFile.toAbsolutePath();
+        this.legacy = legacy;
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = DriverManager.getConnection(url);
+            try (Statement st = connection.createStatement()) {
+                for (String ddl : SCHEMA) st.execute(ddl);
+            }
+        }
+        return connection;
+    }
+
+    @Override
+    public List<Candidature> getAll() {
+        return candidatures;
+    }
+
+    /* =========================
+       CHARGEMENT
+       ========================= */
+    @Override
+    public synchronized List<Candidature> load() {
+        try {
+            Connection cx = connection();
+            Map<String, Candidature> byId = new LinkedHashMap<>();
+
+            try (Statement st = cx.createStatement();
+                 ResultSet rs = st.executeQuery("""
+                         SELECT c.id, c.entreprise, c.poste, c.date_envoi, c.statut, c.dossier, c.notes, c.date_relance,
+                                (SELECT COUNT(*) FROM document d WHERE d.candidature_id = c.id)
+                         FROM candidature c ORDER BY c.date_envoi DESC""")) {
+                while (rs.next()) {
+                    Candidature c = new Candidature();
+                    c.setId(rs.getString(1));
+                    c.setEntreprise(rs.getString(2));
+                    c.setPoste(rs.getString(3));
+                    c.setDateEnvoi(toLocalDate(rs.getDate(4)));
+                    String statut = rs.getString(5);
+                    c.setStatut(statut != null ? StatutCandidature.valueOf(statut) : null);
+                    String dossier = rs.getString(6);
+                    c.setDossier(dossier != null ? Path.of(dossier) : null);
+                    c.setNotes(rs.getString(7));
+                    c.setDateRelance(toLocalDate(rs.getDate(8)));
+
+                    // Documents chargés au premier accès, par requête sur la clé de la candidature
+                    c.setDocumentCount(rs.getInt(9));
+                    String id = c.getId();
+                    c.setLazyDocuments(() -> loadDocuments(id));
+                    byId.put(id, c);
+                }
+            }
+
+            storedIds.clear();
+            storedIds.addAll(byId.keySet());
+            candidatures = new ArrayList<>(byId.values());
+
+            if (candidatures.isEmpty() && legacy != null && legacy.exists()) {
+                // Base vide : migration depuis candidatures.json + journal
+                candidatures = legacy.load();
+                candidatures.forEach(c -> c.markClean(-1));
+                save(candidatures);
+            } else {
+                candidatures.forEach(c -> c.markClean(c.getVersion()));
+            }
+            return candidatures;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erreur lecture base H2", e);
+        }
+    }
+
+    private Connection readConnection() throws SQLException {
+        if (readConnection == null || readConnection.isClosed()) {
+            readConnection = DriverManager.getConnection(url);
+            readConnection.setReadOnly(true);
+        }
+        return readConnection;
+    }
+
+    private List<DocumentFile> loadDocuments(String candidatureId) {
+        List<DocumentFile> docs = new ArrayList<>();
+        synchronized (readLock) {
+            try (PreparedStatement ps = readConnection().prepareStatement("""
+                    SELECT fichier, nom, date_mail FROM document
+                    WHERE candidature_id = ? ORDER BY position""")) {
+                ps.setString(1, candidatureId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String fichier = rs.getString(1);
+                        Timestamp dateMail = rs.getTimestamp(3);
+                        docs.add(new DocumentFile(
+                                fichier != null ? Path.of(fichier) : null,
+                                dateMail != null ? dateMail.toLocalDateTime() : null,
+                                rs.getString(2)));
+                    }
+                }
+                return docs;
+            } catch (SQLException e) {
+                throw new RuntimeException("Erreur lecture base H2", e);
+            }
+        }
+    }
+
+    /* =========================
+       SAUVEGARDE LIGNE PAR LIGNE
+       ========================= */
+    @Override
+    public synchronized void save(List<Candidature> list) {
+        try {
+            Connection cx = connection();
+            cx.setAutoCommit(false);
+
+            Set<String> presents = new HashSet<>();
+            Map<Candidature, Long> written = new HashMap<>();
+
+            try (PreparedStatement merge = cx.prepareStatement("""
+                    MERGE INTO candidature (id, entreprise, poste, date_envoi, annee, mois, statut, dossier, notes, date_relance)
+                    KEY (id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""");
+                 PreparedStatement deleteDocs = cx.prepareStatement(
+                         "DELETE FROM document WHERE candidature_id = ?");
+                 PreparedStatement insertDoc = cx.prepareStatement("""
+                         INSERT INTO document (candidature_id, position, fichier, nom, date_mail)
+                         VALUES (?, ?, ?, ?, ?)""")) {
+
+                for (Candidature c : list) {
+                    if (c.getId() == null) c.setId(UUID.randomUUID().toString());
+                    presents.add(c.getId());
+                    if (!c.isDirty() && storedIds.contains(c.getId())) continue;
+
+                    long version = c.getVersion();
+                    bindCandidature(merge, c);
+                    merge.addBatch();
+
+                    // Documents jamais chargés : inchangés, inutile de les réécrire
+                    if (c.isDocumentsLoaded() || !storedIds.contains(c.getId())) {
+                        deleteDocs.setString(1, c.getId());
+                        deleteDocs.addBatch();
+
+                        int position = 0;
+                        for (DocumentFile doc : c.peekDocuments()) {
+                            insertDoc.setString(1, c.getId());
+                            insertDoc.setInt(2, position++);
+                            insertDoc.setString(3, doc.getFichier() != null ? doc.getFichier().toString() : null);
+                            insertDoc.setString(4, doc.getNom());
+                            insertDoc.setTimestamp(5, doc.getDateMail() != null ? Timestamp.valueOf(doc.getDateMail()) : null);
+                            insertDoc.addBatch();
+                        }
+                    }
+                    written.put(c, version);
+                }
+
+                merge.executeBatch();
+                deleteDocs.executeBatch();
+                insertDoc.executeBatch();
+            }
+
+            Set<String> removed = new HashSet<>(storedIds);
+            removed.removeAll(presents);
+            if (!removed.isEmpty()) {
+                try (PreparedStatement delete = cx.prepareStatement("DELETE FROM candidature WHERE id = ?")) {
+                    for (String id : removed) {
+                        delete.setString(1, id);
+                        delete.addBatch();
+                    }
+                    delete.executeBatch();
+                }
+            }
+
+            cx.commit();
+
+            storedIds.clear();
+            storedIds.addAll(presents);
+            written.forEach(Candidature::markClean);
+            candidatures = CandidatureRepository.originals(list);
+        } catch (SQLException e) {
+            try {
+                if (connection != null) connection.rollback();
+            } catch (SQLException ignored) {}
+            throw new RuntimeException("Erreur écriture base H2", e);
+        }
+    }
+
+    private static void bindCandidature(PreparedStatement ps, Candidature c) throws SQLException {
+        LocalDate date = c.getDateEnvoi();
+        ps.setString(1, c.getId());
+        ps.setString(2, c.getEntreprise());
+        ps.setString(3, c.getPoste());
+        ps.setDate(4, date != null ? Date.valueOf(date) : null);
+        if (date != null) {
+            ps.setInt(5, date.getYear());
+            ps.setInt(6, date.getMonthValue());
+        } else {
+            ps.setNull(5, Types.INTEGER);
+            ps.setNull(6, Types.INTEGER);
+        }
+        ps.setString(7, c.getStatut() != null ? c.getStatut().name() : null);
+        ps.setString(8, c.getDossier() != null ? c.getDossier().toString() : null);
+        ps.setString(9, c.getNotes());
+        ps.setDate(10, c.getDateRelance() != null ? Date.valueOf(c.getDateRelance()) : null);
+    }
+
+    /* =========================
+       REQUÊTES INDEXÉES
+       ========================= */
+    @Override
+    public boolean hasIndexedQueries() {
+        return true;
+    }
+
+    @Override
+    public Set<String> findIds(StatutCandidature statut, Integer mois, String entreprise) {
+        StringBuilder sql = new StringBuilder("SELECT id FROM candidature WHERE 1=1");
+        List<Object> params = new ArrayList<>();
+        if (statut != null && statut != StatutCandidature.TOUTES) {
+            sql.append(" AND statut = ?");
+            params.add(statut.name());
+        }
+        if (mois != null) {
+            sql.append(" AND mois = ?");
+            params.add(mois);
+        }
+        if (entreprise != null) {
+            sql.append(" AND entreprise = ?");
+            params.add(entreprise);
+        }
+
+        synchronized (readLock) {
+            try (PreparedStatement ps = readConnection().prepareStatement(sql.toString())) {
+                for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+                Set<String> ids = new HashSet<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) ids.add(rs.getString(1));
+                }
+                return ids;
+            } catch (SQLException e) {
+                throw new RuntimeException("Erreur requête base H2", e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized long countByStatut(StatutCandidature statut) {
+        try (PreparedStatement ps = connection().prepareStatement(
+                "SELECT COUNT(*) FROM candidature WHERE statut = ?")) {
+            ps.setString(1, statut.name());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erreur requête base H2", e);
+        }
+    }
+
+    @Override
+    public synchronized Map<String, Long> countByEntreprise() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        try (Statement st = connection().createStatement();
+             ResultSet rs = st.executeQuery(
+                     "SELECT entreprise, COUNT(*) FROM candidature GROUP BY entreprise ORDER BY entreprise")) {
+            while (rs.next()) result.put(rs.getString(1), rs.getLong(2));
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erreur requête base H2", e);
+        }
+    }
+
+    @Override
+    public synchronized Map<YearMonth, Long> countByMonth() {
+        Map<YearMonth, Long> result = new LinkedHashMap<>();
+        try (Statement st = connection().createStatement();
+             ResultSet rs = st.executeQuery("""
+                     SELECT annee, mois, COUNT(*) FROM candidature
+                     WHERE annee IS NOT NULL GROUP BY annee, mois ORDER BY annee, mois""")) {
+            while (rs.next()) result.put(YearMonth.of(rs.getInt(1), rs.getInt(2)), rs.getLong(3));
+            return result;
+        } catch (SQLException e) {
+            throw new RuntimeException("Erreur requête base H2", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (connection != null && !connection.isClosed()) connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        synchronized (readLock) {
+            try {
+                if (readConnection != null && !readConnection.isClosed()) readConnection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date != null ? date.toLocalDate() : null;
+    }
+}
@@ -0,0 +1,212 @@
+package app.repository;
+
+import app.model.Candidature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * Stockage JSON : snapshot candidatures.json + journal append-only + snapshot binaire optionnel.
+ */
+public class JsonCandidatureRepository implements CandidatureRepository {
+
+    // Empreinte inconnue : candidature chargée mais jamais sérialisée depuis
+    private static final long UNKNOWN_FINGERPRINT = 0L;
+
+    // Compaction dès que le journal dépasse ce nombre d'entrées ou la moitié du snapshot
+    private static final int COMPACTION_MIN_ENTRIES = 256;
+
+    private final ObjectMapper mapper;
+    private final File file;
+    private final CandidatureJournal journal;
+    private final BinarySnapshotCodec binary; // null si désactivé
+
+    private List<Candidature> candidatures = new ArrayList<>();
+
+    // Empreinte de la dernière version persistée de chaque candidature (id -> empreinte)
+    private final Map<String, Long> persisted = new HashMap<>();
+
+    public JsonCandidatureRepository(ObjectMapper mapper, File file, Path journalFile, BinarySnapshotCodec binary) {
+        this.mapper = mapper;
+        this.file = file;
+        this.journal = new CandidatureJournal(journalFile, mapper);
+        this.binary = binary;
+    }
+
+    @Override
+    public List<Candidature> getAll() {
+        return candidatures;
+    }
+
+    public void add(Candidature c) {
+        candidatures.add(c);
+        save(candidatures);
+    }
+
+    /* =========================
+       SAUVEGARDE INCRÉMENTALE
+       ========================= */
+    @Override
+    public synchronized void save(List<Candidature> list) {
+        try {
+            for (Candidature c : list) {
+                if (c.getId() == null) c.setId(UUID.randomUUID().toString());
+            }
+
+            List<CandidatureJournal.Entry> entries = new ArrayList<>();
+            Set<String> presents = new HashSet<>();
+
+            // Appliqués seulement une fois le journal écrit : un échec laisse tout à réécrire
+            List<Runnable> markClean = new ArrayList<>();
+            Map<String, Long> written = new HashMap<>();
+            List<String> removed = new ArrayList<>();
+
+            for (Candidature c : list) {
+                presents.add(c.getId());
+
+                // Candidature inchangée depuis la dernière écriture : pas de sérialisation
+                Long previous = persisted.get(c.getId());
+                if (previous != null && !c.isDirty()) continue;
+
+                long version = c.getVersion();
+                long fingerprint = fingerprint(mapper.writeValueAsBytes(c));
+                if (previous == null || previous != fingerprint) {
+                    entries.add(new CandidatureJournal.Entry(CandidatureJournal.PUT, c.getId(), c));
+                    written.put(c.getId(), fingerprint);
+                }
+                markClean.add(() -> c.markClean(version));
+            }
+
+            for (String id : new ArrayList<>(persisted.keySet())) {
+                if (!presents.contains(id)) {
+                    entries.add(new CandidatureJournal.Entry(CandidatureJournal.DEL, id, null));
+                    removed.add(id);
+                }
+            }
+
+            journal.append(entries);
+            persisted.putAll(written);
+            removed.forEach(persisted::remove);
+            markClean.forEach(Runnable::run);
+            candidatures = CandidatureRepository.originals(list);
+
+            if (needsCompaction()) {
+                compact(list);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur écriture JSON", e);
+        }
+    }
+
+    /* =========================
+       COMPACTION (journal -> snapshot)
+       ========================= */
+    public synchronized void compact(List<Candidature> list) {
+        try {
+            // Écriture atomique : un crash laisse soit l'ancien snapshot + journal, soit le nouveau
+            Path tmp = new File(file.getPath() + ".tmp").toPath();
+            mapper.writeValue(tmp.toFile(), list);
+            Files.move(tmp, file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.truncate();
+            writeBinary(list);
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur écriture JSON", e);
+        }
+    }
+
+    private boolean needsCompaction() {
+        if (journal.getEntryCount() < COMPACTION_MIN_ENTRIES) return false;
+        return journal.size() > file.length() / 2;
+    }
+
+    public boolean exists() {
+        return file.exists() || Files.exists(journal.getFile());
+    }
+
+    /* =========================
+       CHARGEMENT (snapshot + rejeu du journal)
+       ========================= */
+    @Override
+    public synchronized List<Candidature> load() {
+        try {
+            Map<String, Candidature> byId = new LinkedHashMap<>();
+            boolean idsGeneres = false;
+
+            if (file.exists()) {
+                List<Candidature> snapshot = readBinary();
+                boolean fromBinary = snapshot != null;
+                if (!fromBinary) {
+                    snapshot = mapper.readValue(file,
+                            mapper.getTypeFactory().constructCollectionType(List.class, Candidature.class));
+                }
+
+                // Binaire absent ou périmé : on le régénère pour le prochain démarrage
+                if (!fromBinary) writeBinary(snapshot);
+
+                for (Candidature c : snapshot) {
+                    if (c.getId() == null) {
+                        c.setId(UUID.randomUUID().toString());
+                        idsGeneres = true;
+                    }
+                    byId.put(c.getId(), c);
+                }
+            }
+
+            journal.replay(byId);
+
+            candidatures = new ArrayList<>(byId.values());
+
+            persisted.clear();
+            // Pas de sérialisation au démarrage : le dirty tracking suffit à détecter les changements
+            for (Candidature c : candidatures) {
+                persisted.put(c.getId(), UNKNOWN_FINGERPRINT);
+                c.markClean(c.getVersion());
+            }
+
+            // Ancien fichier sans identifiants : on fige les ids générés dans le snapshot
+            if (idsGeneres) {
+                compact(candidatures);
+            }
+
+            return candidatures;  // <-- retourner la liste
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur lecture JSON", e);
+        }
+    }
+
+    private List<Candidature> readBinary() throws IOException {
+        if (binary == null) return null;
+        return binary.read(BinarySnapshotCodec.SourceStamp.of(file.toPath()));
+    }
+
+    private void writeBinary(List<Candidature> list) {
+        if (binary == null || !file.exists()) return;
+        try {
+            binary.write(list, BinarySnapshotCodec.SourceStamp.of(file.toPath()));
+        } catch (IOException e) {
+            // Non bloquant : le JSON reste la référence
+            System.err.println("Écriture du snapshot binaire impossible : " + e.getMessage());
+        }
+    }
+
+    private static long fingerprint(byte[] bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        return ((long) Arrays.hashCode(bytes) << 32) ^ crc.getValue() ^ bytes.length;
+    }
+}
@@ -0,0 +1,231 @@
+package app.repository;
+
+import app.model.Candidature;
+import app.model.DocumentFile;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Stockage fragmenté : un fichier de métadonnées par candidature dans son dossier
+ * (ou sous .shards/ si elle n'a pas encore de dossier), plus un petit manifeste global.
+ * Seules les candidatures modifiées sont réécrites ; le chargement lit les en-têtes en parallèle,
+ * les documents sont relus depuis le fragment au premier accès.
+ */
+public class ShardedCandidatureRepository implements CandidatureRepository {
+
+    public static final String SHARD_FILE = ".candidature.json";
+    private static final String MANIFEST_FILE = ".manifest.json";
+    private static final String ORPHAN_DIR = ".shards";
+
+    public record ManifestEntry(String id, String shard) {
+    }
+
+    public record Manifest(int version, List<ManifestEntry> entries) {
+    }
+
+    // En-tête seul : la liste des documents est sautée au chargement et relue au premier accès
+    @JsonIgnoreProperties({"documents"})
+    private abstract static class HeaderOnly {
+    }
+
+    private final Path root;
+    private final ObjectMapper mapper;
+    private final ObjectMapper headerMapper;
+    // Ancien stockage JSON, migré à la première ouverture
+    private final JsonCandidatureRepository legacy;
+
+    private List<Candidature> candidatures = new ArrayList<>();
+
+    // Dernier manifeste écrit : id -> chemin du fragment relatif à la racine
+    private final Map<String, String> manifest = new HashMap<>();
+    // Fragments introuvables au chargement (disque non monté, dossier déplacé...) : entrées gardées
+    // telles quelles dans le manifeste pour que la candidature revienne avec son fichier
+    private final Map<String, String> missing = new LinkedHashMap<>();
+
+    public ShardedCandidatureRepository(Path root, ObjectMapper mapper, JsonCandidatureRepository legacy) {
+        this.root = root;
+        this.mapper = mapper;
+        this.headerMapper = mapper.copy().addMixIn(Candidature.class, HeaderOnly.class);
+        this.legacy = legacy;
+    }
+
+    @Override
+    public List<Candidature> getAll() {
+        return candidatures;
+    }
+
+    public boolean exists() {
+        return Files.exists(root.resolve(MANIFEST_FILE));
+    }
+
+    /* =========================
+       SAUVEGARDE (fragments modifiés uniquement)
+       ========================= */
+    @Override
+    public synchronized void save(List<Candidature> list) {
+        try {
+            writeShards(list);
+            candidatures = CandidatureRepository.originals(list);
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur écriture des fragments", e);
+        }
+    }
+
+    private void writeShards(List<Candidature> list) throws IOException {
+        Files.createDirectories(root);
+
+        Map<String, String> next = new HashMap<>();
+        // Anciens emplacements (dossier attribué ou renommé) : supprimés une fois le manifeste à jour
+        List<String> stale = new ArrayList<>();
+        for (Candidature c : list) {
+            if (c.getId() == null) c.setId(UUID.randomUUID().toString());
+            missing.remove(c.getId());
+            Path shard = shardPath(c);
+            String relative = root.relativize(shard).toString();
+            next.put(c.getId(), relative);
+
+            String previous = manifest.get(c.getId());
+            if (c.isDirty() || !relative.equals(previous)) {
+                long version = c.getVersion();
+                writeAtomically(shard, mapper.writeValueAsBytes(c));
+                c.markClean(version);
+            }
+            if (previous != null && !relative.equals(previous)) stale.add(previous);
+        }
+
+        next.putAll(missing);
+
+        // Fragments des candidatures supprimées (le dossier a souvent déjà disparu)
+        for (Map.Entry<String, String> old : manifest.entrySet()) {
+            if (!next.containsKey(old.getKey())) stale.add(old.getValue());
+        }
+
+        if (!next.equals(manifest)) {
+            List<ManifestEntry> entries = new ArrayList<>(list.size());
+            for (Candidature c : list) {
+                entries.add(new ManifestEntry(c.getId(), next.get(c.getId())));
+            }
+            missing.forEach((id, shard) -> entries.add(new ManifestEntry(id, shard)));
+            writeAtomically(root.resolve(MANIFEST_FILE), mapper.writeValueAsBytes(new Manifest(1, entries)));
+            manifest.clear();
+            manifest.putAll(next);
+        }
+
+        // Après le manifeste : un arrêt brutal avant cette étape laisse au pire un fragment en trop
+        if (!stale.isEmpty()) {
+            Set<String> current = new HashSet<>(next.values());
+            for (String old : stale) {
+                if (!current.contains(old)) Files.deleteIfExists(root.resolve(old));
+            }
+        }
+    }
+
+    /* =========================
+       CHARGEMENT PARALLÈLE
+       ========================= */
+    @Override
+    public synchronized List<Candidature> load() {
+        try {
+            if (exists()) {
+                candidatures = readShards();
+            } else {
+                // Première ouverture en mode fragmenté : migration depuis candidatures.json + journal
+                candidatures = legacy != null && legacy.exists() ? legacy.load() : new ArrayList<>();
+                candidatures.forEach(c -> c.markClean(-1));
+                writeShards(candidatures);
+            }
+            return candidatures;
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur lecture des fragments", e);
+        }
+    }
+
+    private List<Candidature> readShards() throws IOException {
+        manifest.clear();
+        missing.clear();
+        Path manifestFile = root.resolve(MANIFEST_FILE);
+
+        Manifest m = mapper.readValue(manifestFile.toFile(), Manifest.class);
+
+        List<ManifestEntry> present = new ArrayList<>(m.entries().size());
+        for (ManifestEntry entry : m.entries()) {
+            if (Files.exists(root.resolve(entry.shard()))) {
+                present.add(entry);
+            } else {
+                System.err.println("Fragment manquant pour la candidature " + entry.id() + " : "
+                        + root.resolve(entry.shard()) + " (entrée conservée)");
+                missing.put(entry.id(), entry.shard());
+            }
+        }
+
+        List<Candidature> loaded;
+        try {
+            loaded = present.parallelStream()
+                    .map(this::readShard)
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<Candidature> result = new ArrayList<>(loaded);
+        for (Candidature c : result) {
+            manifest.put(c.getId(), root.relativize(shardPath(c)).toString());
+            c.markClean(c.getVersion());
+        }
+        manifest.putAll(missing);
+        return result;
+    }
+
+    private Candidature readShard(ManifestEntry entry) {
+        Path shard = root.resolve(entry.shard());
+        try {
+            Candidature c = headerMapper.readValue(shard.toFile(), Candidature.class);
+            // documentCount vient du fragment (absent des anciens fragments : chargement au besoin)
+            // Fragment lu à son emplacement d'origine, ou au nouveau si le dossier a changé depuis
+            c.setLazyDocuments(() -> readDocuments(Files.exists(shard) ? shard : shardPath(c)));
+            return c;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private List<DocumentFile> readDocuments(Path shard) {
+        try {
+            JsonNode documents = mapper.readTree(shard.toFile()).get("documents");
+            if (documents == null || documents.isNull()) return new ArrayList<>();
+            return mapper.convertValue(documents, new TypeReference<List<DocumentFile>>() {});
+        } catch (IOException e) {
+            throw new UncheckedIOException("Lecture des documents impossible : " + shard, e);
+        }
+    }
+
+    private Path shardPath(Candidature c) {
+        if (c.getDossier() != null) {
+            return c.getDossier().resolve(SHARD_FILE);
+        }
+        return root.resolve(ORPHAN_DIR).resolve(c.getId() + ".json");
+    }
+
+    private static void writeAtomically(Path target, byte[] bytes) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, bytes);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
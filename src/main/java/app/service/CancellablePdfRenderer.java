@@ -0,0 +1,36 @@
+package app.service;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.rendering.PageDrawer;
+import org.apache.pdfbox.rendering.PageDrawerParameters;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * PDFRenderer interruptible : le rendu d'une page s'arrête à l'opérateur suivant
+ * dès que le thread qui rend est interrompu (requête annulée par PdfRenderScheduler).
+ */
+public class CancellablePdfRenderer extends PDFRenderer {
+
+    public CancellablePdfRenderer(PDDocument document) {
+        super(document);
+    }
+
+    @Override
+    protected PageDrawer createPageDrawer(PageDrawerParameters parameters) throws IOException {
+        return new PageDrawer(parameters) {
+            @Override
+            protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Rendu annulé");
+                }
+                super.processOperator(operator, operands);
+            }
+        };
+    }
+}
@@ -0,0 +1,365 @@
+package app.service;
+
+import app.model.Candidature;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Candidature concernée par un PDF, trouvée en un seul passage sur son texte :
+ * automate d'Aho-Corasick construit sur toutes les entreprises et tous les postes.
+ * Texte et motifs sont comparés en minuscules, sans accents ni ponctuation, et sur des
+ * mots entiers. L'automate suit les ajouts et modifications (nouveaux motifs insérés,
+ * liens d'échec recalculés au passage suivant) ; les motifs sans candidature ne sont
+ * purgés, par reconstruction complète, que lorsqu'ils deviennent majoritaires.
+ */
+public class CandidatureMatcher {
+
+    private static final double ENTREPRISE_WEIGHT = 3.0;
+    private static final double POSTE_WEIGHT = 1.0;
+    // Au-delà, une répétition du même nom n'apporte plus rien
+    private static final int MAX_COUNT = 3;
+    private static final int MIN_PATTERN_LENGTH = 3;
+    private static final int MIN_DEAD_BEFORE_REBUILD = 64;
+
+    private static final char SPACE = ' ';
+    // Formes juridiques retirées en fin de nom : « Capgemini SAS » doit reconnaître « Capgemini »
+    private static final Set<String> LEGAL_FORMS = Set.of(
+            "sa", "sas", "sasu", "sarl", "eurl", "sci", "sca", "snc", "inc", "ltd", "llc", "gmbh", "ag", "bv", "plc");
+
+    // Candidature trouvée, score et présence du nom de l'entreprise dans le texte
+    public record Proposal(Candidature candidature, double score, boolean entrepriseFound) {
+    }
+
+    private record Owner(Candidature candidature, boolean entreprise) {
+    }
+
+    private record Key(String text, boolean entreprise) {
+    }
+
+    private static final class Pattern {
+        final String text;
+        final List<Owner> owners = new ArrayList<>();
+
+        Pattern(String text) {
+            this.text = text;
+        }
+    }
+
+    private final ExtractedTextCache texts;
+
+    // Motifs déjà inscrits (texte normalisé, entouré d'espaces) et candidatures qui les portent
+    private final Map<String, Integer> patternIds = new HashMap<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final Map<Candidature, List<Key>> registered = new IdentityHashMap<>();
+    private int deadPatterns;
+
+    /* =========================
+       AUTOMATE
+       ========================= */
+
+    // Transitions : (état << 16 | caractère) -> état ; enfants chaînés pour le parcours en largeur
+    private final Map<Long, Integer> edges = new HashMap<>();
+    // Caractère de la transition qui mène à chaque état
+    private char[] label = new char[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    private int[] fail = new int[64];
+    // Motif reconnu dans cet état (-1 : aucun) et état suivant de la chaîne d'échec qui en reconnaît un
+    private int[] output = new int[64];
+    private int[] outputLink = new int[64];
+    private int nodes;
+    private boolean failDirty;
+
+    public CandidatureMatcher() {
+        this(ExtractedTextCache.getDefault());
+    }
+
+    public CandidatureMatcher(ExtractedTextCache texts) {
+        this.texts = texts;
+        reset();
+    }
+
+    /* =========================
+       MISE À JOUR
+       ========================= */
+
+    public synchronized void addAll(Collection<? extends Candidature> candidatures) {
+        candidatures.forEach(this::add);
+    }
+
+    public synchronized void add(Candidature c) {
+        if (registered.containsKey(c)) {
+            update(c);
+            return;
+        }
+        List<Key> keys = keys(c);
+        registered.put(c, keys);
+        for (Key key : keys) {
+            Integer id = patternIds.get(key.text());
+            Pattern pattern;
+            if (id == null) {
+                pattern = patterns.get(insert(key.text()));
+            } else {
+                pattern = patterns.get(id);
+                // Motif orphelin repris par une candidature
+                if (pattern.owners.isEmpty()) deadPatterns--;
+            }
+            pattern.owners.add(new Owner(c, key.entreprise()));
+        }
+    }
+
+    public synchronized void remove(Candidature c) {
+        List<Key> keys = registered.remove(c);
+        if (keys == null) return;
+        for (Key key : keys) {
+            Pattern pattern = patterns.get(patternIds.get(key.text()));
+            pattern.owners.removeIf(o -> o.candidature() == c);
+            if (pattern.owners.isEmpty()) deadPatterns++;
+        }
+        // Automate encombré de motifs orphelins : reconstruit à partir des seules candidatures restantes
+        if (deadPatterns > MIN_DEAD_BEFORE_REBUILD && deadPatterns > patterns.size() / 2) rebuild();
+    }
+
+    // Entreprise ou poste modifié : seuls les motifs qui changent sont touchés
+    public synchronized void update(Candidature c) {
+        List<Key> old = registered.get(c);
+        if (old != null && old.equals(keys(c))) return;
+        remove(c);
+        add(c);
+    }
+
+    private void rebuild() {
+        List<Candidature> candidatures = new ArrayList<>(registered.keySet());
+        registered.clear();
+        patternIds.clear();
+        patterns.clear();
+        deadPatterns = 0;
+        reset();
+        candidatures.forEach(this::add);
+    }
+
+    private void reset() {
+        edges.clear();
+        nodes = 0;
+        newNode();
+        failDirty = false;
+    }
+
+    private int newNode() {
+        if (nodes == fail.length) {
+            int size = nodes * 2;
+            label = Arrays.copyOf(label, size);
+            firstChild = Arrays.copyOf(firstChild, size);
+            nextSibling = Arrays.copyOf(nextSibling, size);
+            fail = Arrays.copyOf(fail, size);
+            output = Arrays.copyOf(output, size);
+            outputLink = Arrays.copyOf(outputLink, size);
+        }
+        int node = nodes++;
+        firstChild[node] = -1;
+        nextSibling[node] = -1;
+        fail[node] = 0;
+        output[node] = -1;
+        outputLink[node] = -1;
+        return node;
+    }
+
+    private int insert(String text) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            long edge = edge(state, text.charAt(i));
+            Integer next = edges.get(edge);
+            if (next == null) {
+                next = newNode();
+                label[next] = text.charAt(i);
+                edges.put(edge, next);
+                nextSibling[next] = firstChild[state];
+                firstChild[state] = next;
+                failDirty = true;
+            }
+            state = next;
+        }
+        int id = patterns.size();
+        patterns.add(new Pattern(text));
+        patternIds.put(text, id);
+        output[state] = id;
+        // Les liens de sortie des états existants peuvent désormais mener à ce motif
+        failDirty = true;
+        return id;
+    }
+
+    // Liens d'échec et de sortie recalculés en largeur (O(nombre d'états))
+    private void computeFailLinks() {
+        int[] queue = new int[nodes];
+        int head = 0;
+        int tail = 0;
+        for (int child = firstChild[0]; child >= 0; child = nextSibling[child]) {
+            fail[child] = 0;
+            outputLink[child] = -1;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int child = firstChild[state]; child >= 0; child = nextSibling[child]) {
+                char ch = label[child];
+                int f = fail[state];
+                Integer next;
+                while ((next = edges.get(edge(f, ch))) == null && f != 0) f = fail[f];
+                fail[child] = next != null && next != child ? next : 0;
+                int target = fail[child];
+                outputLink[child] = output[target] >= 0 ? target : outputLink[target];
+                queue[tail++] = child;
+            }
+        }
+        failDirty = false;
+    }
+
+    private static long edge(int state, char ch) {
+        return ((long) state << 16) | ch;
+    }
+
+    /* =========================
+       RECHERCHE
+       ========================= */
+
+    // Meilleure candidature pour ce PDF (texte extrait une fois, partagé via le cache), null si aucune
+    public Proposal best(Path pdf) throws IOException {
+        return best(texts.load(pdf).text());
+    }
+
+    /**
+     * Meilleure proposition, null si le nom d'aucune entreprise n'apparaît :
+     * un poste seul (« Développeur Java ») est trop courant pour décider.
+     */
+    public Proposal best(String text) {
+        List<Proposal> proposals = match(text);
+        return !proposals.isEmpty() && proposals.get(0).entrepriseFound() ? proposals.get(0) : null;
+    }
+
+    // Candidatures citées dans le texte, de la plus probable à la moins probable
+    public synchronized List<Proposal> match(String text) {
+        if (text == null || text.isEmpty() || patterns.isEmpty()) return List.of();
+        if (failDirty) computeFailLinks();
+
+        int[] counts = new int[patterns.size()];
+        int state = step(0, SPACE, counts);
+        char previous = SPACE;
+        for (int i = 0; i < text.length(); i++) {
+            char ch = fold(text.charAt(i));
+            if (ch == SPACE && previous == SPACE) continue;
+            state = step(state, ch, counts);
+            previous = ch;
+        }
+        if (previous != SPACE) step(state, SPACE, counts);
+
+        // Un motif partagé par plusieurs candidatures compte pour chacune à proportion
+        Map<Candidature, double[]> scores = new IdentityHashMap<>();
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] == 0) continue;
+            List<Owner> owners = patterns.get(id).owners;
+            for (Owner owner : owners) {
+                double[] score = scores.computeIfAbsent(owner.candidature(), c -> new double[2]);
+                score[0] += (owner.entreprise() ? ENTREPRISE_WEIGHT : POSTE_WEIGHT)
+                        * Math.min(counts[id], MAX_COUNT) / owners.size();
+                if (owner.entreprise()) score[1] = 1;
+            }
+        }
+
+        List<Proposal> proposals = new ArrayList<>(scores.size());
+        scores.forEach((c, s) -> proposals.add(new Proposal(c, s[0], s[1] > 0)));
+        // À score égal, la candidature la plus récente : c'est en général celle dont parle le mail
+        proposals.sort(Comparator.comparingDouble(Proposal::score).reversed()
+                .thenComparing(p -> p.candidature().getDateEnvoi(), Comparator.nullsLast(Comparator.<LocalDate>reverseOrder())));
+        return proposals;
+    }
+
+    private int step(int state, char ch, int[] counts) {
+        Integer next;
+        while ((next = edges.get(edge(state, ch))) == null && state != 0) state = fail[state];
+        state = next != null ? next : 0;
+        for (int s = output[state] >= 0 ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+            counts[output[s]]++;
+        }
+        return state;
+    }
+
+    /* =========================
+       NORMALISATION
+       ========================= */
+
+    // Entreprise et poste, normalisés et entourés d'espaces (mots entiers uniquement)
+    private static List<Key> keys(Candidature c) {
+        List<Key> keys = new ArrayList<>(2);
+        String entreprise = withoutLegalForm(normalize(c.getEntreprise()));
+        if (entreprise.length() >= MIN_PATTERN_LENGTH) keys.add(new Key(SPACE + entreprise + SPACE, true));
+        String poste = normalize(c.getPoste());
+        if (poste.length() >= MIN_PATTERN_LENGTH && !poste.equals(entreprise)) {
+            keys.add(new Key(SPACE + poste + SPACE, false));
+        }
+        return keys;
+    }
+
+    static String normalize(String s) {
+        if (s == null) return "";
+        StringBuilder sb = new StringBuilder(s.length());
+        char previous = SPACE;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = fold(s.charAt(i));
+            if (ch == SPACE && previous == SPACE) continue;
+            sb.append(ch);
+            previous = ch;
+        }
+        return sb.toString().trim();
+    }
+
+    private static String withoutLegalForm(String name) {
+        int space = name.lastIndexOf(SPACE);
+        if (space > 0 && LEGAL_FORMS.contains(name.substring(space + 1))) return name.substring(0, space);
+        return name;
+    }
+
+    // Table de repli calculée une fois pour l'alphabet latin (accents retirés, minuscules)
+    private static final char[] LATIN = new char[0x250];
+
+    static {
+        for (char c = 0; c < LATIN.length; c++) {
+            if (!Character.isLetterOrDigit(c)) {
+                LATIN[c] = SPACE;
+                continue;
+            }
+            String base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+            LATIN[c] = base.length() == 1 ? Character.toLowerCase(base.charAt(0)) : Character.toLowerCase(c);
+        }
+    }
+
+    private static char fold(char c) {
+        if (c < LATIN.length) return LATIN[c];
+        return Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : SPACE;
+    }
+
+    public synchronized int getPatternCount() {
+        return patterns.size() - deadPatterns;
+    }
+
+    public synchronized int getStateCount() {
+        return nodes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CandidatureMatcher[candidatures=" + registered.size() + ", patterns=" + getPatternCount()
+                + ", states=" + nodes + "]";
+    }
+}
@@ -2,6 +2,7 @@ package app.service;
 
 import app.model.Candidature;
 import app.model.StatutCandidature;
+import app.repository.CandidatureRepository;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -20,10 +21,18 @@ public class CandidatureService {
     // Accès à toutes les candidatures
     private List<Candidature> candidatures;
 
+    // Si renseigné, les statistiques sont calculées par le store (requêtes indexées)
+    private CandidatureRepository repository;
+
     public CandidatureService(List<Candidature> candidatures) {
         this.candidatures = candidatures;
     }
 
+    public CandidatureService(CandidatureRepository repository) {
+        this.repository = repository;
+        this.candidatures = repository.getAll();
+    }
+
     // Nombre total de candidatures
     public int getTotal() {
         return candidatures.size();
@@ -31,6 +40,7 @@ public class CandidatureService {
 
     // Nombre de candidatures par statut
     public long countByStatut(StatutCandidature statut) {
+        if (repository != null) return repository.countByStatut(statut);
         return candidatures.stream()
                 .filter(c -> c.getStatut() == statut)
                 .count();
@@ -38,12 +48,14 @@ public class CandidatureService {
 
     // Nombre de candidatures par entreprise
     public Map<String, Long> countByEntreprise() {
+        if (repository != null) return repository.countByEntreprise();
         return candidatures.stream()
                 .collect(Collectors.groupingBy(Candidature::getEntreprise, Collectors.counting()));
     }
 
     // Nombre de candidatures par mois
     public Map<YearMonth, Long> countByMonth() {
+        if (repository != null) return repository.countByMonth();
         return candidatures.stream()
                 .collect(Collectors.groupingBy(
                         c -> YearMonth.from(c.getDateEnvoi()),
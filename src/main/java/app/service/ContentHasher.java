@@ -0,0 +1,75 @@
+package app.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Empreinte SHA-256 du contenu d'un fichier, mémorisée par (chemin, date, taille) :
+ * un même PDF n'est relu qu'une fois tant qu'il n'est pas modifié.
+ * Seules les dernières empreintes utilisées sont gardées.
+ */
+public final class ContentHasher {
+
+    private record Key(Path path, long lastModified, long size) {
+    }
+
+    private static final int MEMO_ENTRIES = 1024;
+
+    // Ordre d'accès : les fichiers renommés, déplacés ou modifiés finissent par sortir
+    private static final Map<Key, String> MEMO = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+            return size() > MEMO_ENTRIES;
+        }
+    });
+
+    private ContentHasher() {
+    }
+
+    public static String sha256(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        Key key = new Key(absolute, Files.getLastModifiedTime(absolute).toMillis(), Files.size(absolute));
+        String known = MEMO.get(key);
+        if (known != null) return known;
+
+        String hash = hash(absolute);
+        MEMO.put(key, hash);
+        return hash;
+    }
+
+    // Empreinte déjà connue (fichier déplacé après lecture) : évite de relire le fichier
+    public static void remember(Path file, String hash) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        MEMO.put(new Key(absolute, Files.getLastModifiedTime(absolute).toMillis(), Files.size(absolute)), hash);
+    }
+
+    public static String sha256(byte[] content) {
+        return HexFormat.of().formatHex(digest().digest(content));
+    }
+
+    private static String hash(Path file) throws IOException {
+        MessageDigest digest = digest();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) digest.update(buffer, 0, n);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package app.service;
+
+import app.repository.CandidatureRepositories;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.PDFTextStripperByArea;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Date d'envoi d'un mail imprimé en PDF, lue page par page (setStartPage / setEndPage)
+ * au lieu d'extraire tout le document : selon la stratégie, on s'arrête à la première
+ * date trouvée, aux N premières pages ou au seul en-tête de page.
+ * Formats reconnus : "12 mars 2024 à 14:05", "12/03/2024 14:05" et les en-têtes
+ * anglais ("Date: Tue, 12 Mar 2024 14:05:00 +0100", "Sent: Tuesday, March 12, 2024 2:05 PM").
+ */
+public class DateExtractionService {
+
+    /**
+     * Jusqu'où lire : nombre maximal de pages, fraction haute de la page à lire
+     * (1 = page entière) et arrêt à la première date ou dernière date du texte lu.
+     */
+    public record Strategy(int maxPages, float headerFraction, boolean firstMatch) {
+
+        // Première date du document, en lisant au plus maxPages pages
+        public static Strategy firstMatch(int maxPages) {
+            return new Strategy(maxPages, 1f, true);
+        }
+
+        // Seul le haut de chaque page (zone d'en-tête du mail) est lu
+        public static Strategy headerOnly(int maxPages, float headerFraction) {
+            return new Strategy(maxPages, headerFraction, true);
+        }
+
+        // Dernière date des N premières pages (comportement historique : toutes les pages)
+        public static Strategy lastMatch(int maxPages) {
+            return new Strategy(maxPages, 1f, false);
+        }
+    }
+
+    // Un format de date : expression régulière et conversion du texte trouvé
+    private record DateFormat(Pattern pattern, Function<Matcher, LocalDateTime> parser) {
+    }
+
+    public record Match(LocalDateTime date, int page) {
+    }
+
+    private static final String MOIS =
+            "janvier|février|fevrier|mars|avril|mai|juin|juillet|août|aout|septembre|octobre|novembre|décembre|decembre";
+
+    private static final DateTimeFormatter FRENCH_LONG =
+            DateTimeFormatter.ofPattern("d MMMM yyyy H:mm", Locale.FRENCH);
+    private static final DateTimeFormatter MAIL_HEADER =
+            DateTimeFormatter.ofPattern("d MMM yyyy H:mm:ss Z", Locale.ENGLISH);
+    private static final DateTimeFormatter ENGLISH_SENT =
+            DateTimeFormatter.ofPattern("EEEE, MMMM d, yyyy h:mm a", Locale.ENGLISH);
+
+    private static final List<DateFormat> FORMATS = List.of(
+            // 12 mars 2024 à 14:05
+            new DateFormat(Pattern.compile("\\b(\\d{1,2})\\s+(" + MOIS + ")\\s+(\\d{4})\\s+(?:à\\s+)?(\\d{1,2}):(\\d{2})",
+                    Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
+                    m -> LocalDateTime.parse(m.group(1) + " " + normalizeMonth(m.group(2)) + " " + m.group(3)
+                            + " " + m.group(4) + ":" + m.group(5), FRENCH_LONG)),
+            // 12/03/2024 14:05 ou 12/03/2024 à 14:05
+            new DateFormat(Pattern.compile("\\b(\\d{1,2})/(\\d{1,2})/(\\d{4})\\s+(?:à\\s+)?(\\d{1,2}):(\\d{2})"),
+                    m -> LocalDateTime.of(LocalDate.of(Integer.parseInt(m.group(3)), Integer.parseInt(m.group(2)),
+                            Integer.parseInt(m.group(1))), LocalTime.of(Integer.parseInt(m.group(4)),
+                            Integer.parseInt(m.group(5))))),
+            // Date: Tue, 12 Mar 2024 14:05:33 +0100 (RFC 2822)
+            new DateFormat(Pattern.compile("(?m)^\\s*Date:\\s*(?:[A-Z][a-z]{2},\\s+)?(\\d{1,2})\\s+([A-Z][a-z]{2})\\s+(\\d{4})"
+                    + "\\s+(\\d{1,2}):(\\d{2})(?::(\\d{2}))?\\s+([+-]\\d{4}|GMT|UT)"),
+                    m -> ZonedDateTime.parse(m.group(1) + " " + m.group(2) + " " + m.group(3) + " " + m.group(4)
+                                    + ":" + m.group(5) + ":" + (m.group(6) != null ? m.group(6) : "00") + " "
+                                    + (m.group(7).startsWith("+") || m.group(7).startsWith("-") ? m.group(7) : "+0000"),
+                            MAIL_HEADER).withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime()),
+            // Sent: Tuesday, March 12, 2024 2:05 PM (Outlook)
+            new DateFormat(Pattern.compile("(?m)^\\s*(?:Sent|Date):\\s*([A-Z][a-z]+,\\s+[A-Z][a-z]+\\s+\\d{1,2},\\s+\\d{4}\\s+\\d{1,2}:\\d{2}\\s+[AP]M)"),
+                    m -> LocalDateTime.parse(m.group(1).replaceAll("\\s+", " "), ENGLISH_SENT))
+    );
+
+    @FunctionalInterface
+    private interface PageText {
+        String get(int page) throws IOException;
+    }
+
+    // Part haute de la page lue par la stratégie "entete"
+    private static final float HEADER_FRACTION = 0.3f;
+
+    private static DateExtractionService defaultService;
+
+    private final Strategy strategy;
+    // Texte par page déjà extrait (null : toujours lire le PDF)
+    private final ExtractedTextCache textCache;
+
+    public DateExtractionService(Strategy strategy) {
+        this(strategy, null);
+    }
+
+    public DateExtractionService(Strategy strategy, ExtractedTextCache textCache) {
+        this.strategy = strategy;
+        this.textCache = textCache;
+    }
+
+    public static synchronized DateExtractionService getDefault() {
+        if (defaultService == null) {
+            defaultService = new DateExtractionService(configuredStrategy(), ExtractedTextCache.getDefault());
+        }
+        return defaultService;
+    }
+
+    /**
+     * Réglage "dates" de ~/candidatures.properties (ou -Dcandidatures.dates) :
+     * derniere (défaut, comportement historique : dernière date du document entier),
+     * premiere (première date des 3 premières pages, s'arrête au premier message d'un mail imprimé)
+     * ou entete (première date du haut des pages, 3 pages au plus).
+     */
+    public static Strategy configuredStrategy() {
+        String value = CandidatureRepositories.setting("dates", "derniere");
+        return switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "premiere", "première" -> Strategy.firstMatch(3);
+            case "entete", "en-tête" -> Strategy.headerOnly(3, HEADER_FRACTION);
+            case "derniere", "dernière" -> Strategy.lastMatch(Integer.MAX_VALUE);
+            default -> {
+                System.err.println("Réglage dates inconnu : " + value + " (derniere utilisé)");
+                yield Strategy.lastMatch(Integer.MAX_VALUE);
+            }
+        };
+    }
+
+    /* =========================
+       EXTRACTION
+       ========================= */
+
+    public LocalDateTime extract(Path pdf) throws IOException {
+        // Pages déjà en cache servies sans ouvrir le PDF, les autres extraites puis conservées,
+        // jusqu'à l'arrêt de la stratégie (sauf lecture par zone, qui a besoin de la mise en page)
+        if (textCache != null && strategy.headerFraction() >= 1f) {
+            try (ExtractedTextCache.Pages pages = textCache.open(pdf)) {
+                Match match = scan(pages.count(), pages::text);
+                return match != null ? match.date() : null;
+            }
+        }
+        try (PDDocument document = PDDocument.load(pdf.toFile())) {
+            Match match = extract(document);
+            return match != null ? match.date() : null;
+        }
+    }
+
+    // Null si aucune date dans la partie lue du document
+    public Match extract(PDDocument document) throws IOException {
+        if (strategy.headerFraction() < 1f) return scan(document.getNumberOfPages(), page -> headerText(document, page));
+        PDFTextStripper stripper = new PDFTextStripper();
+        return scan(document.getNumberOfPages(), page -> pageText(stripper, document, page));
+    }
+
+    private Match scan(int pageCount, PageText pageText) throws IOException {
+        int pages = Math.min(pageCount, strategy.maxPages());
+        Match last = null;
+
+        for (int page = 1; page <= pages; page++) {
+            LocalDateTime date = findDate(pageText.get(page), strategy.firstMatch());
+            if (date == null) continue;
+            if (strategy.firstMatch()) return new Match(date, page);
+            last = new Match(date, page);
+        }
+        return last;
+    }
+
+    private static String pageText(PDFTextStripper stripper, PDDocument document, int page) throws IOException {
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        return stripper.getText(document);
+    }
+
+    private String headerText(PDDocument document, int page) throws IOException {
+        PDPage pdPage = document.getPage(page - 1);
+        PDRectangle box = pdPage.getCropBox();
+        // Zone exprimée dans le repère de la page affichée (rotation appliquée, origine en haut à gauche)
+        boolean rotated = pdPage.getRotation() % 180 != 0;
+        float width = rotated ? box.getHeight() : box.getWidth();
+        float height = rotated ? box.getWidth() : box.getHeight();
+        PDFTextStripperByArea stripper = new PDFTextStripperByArea();
+        stripper.setSortByPosition(true);
+        stripper.addRegion("entete", new Rectangle2D.Float(0, 0, width, height * strategy.headerFraction()));
+        stripper.extractRegions(pdPage);
+        return stripper.getTextForRegion("entete");
+    }
+
+    /* =========================
+       RECHERCHE DANS LE TEXTE
+       ========================= */
+
+    // Première (ou dernière) date du texte, tous formats confondus, dans l'ordre du texte
+    public static LocalDateTime findDate(String text, boolean first) {
+        if (text == null || text.isEmpty()) return null;
+        LocalDateTime found = null;
+        int foundAt = first ? Integer.MAX_VALUE : -1;
+
+        for (DateFormat format : FORMATS) {
+            Matcher m = format.pattern().matcher(text);
+            while (m.find()) {
+                // Une date plus tôt (ou plus tard) dans le texte a déjà été retenue
+                if (first ? m.start() >= foundAt : m.start() <= foundAt) {
+                    if (first) break;
+                    continue;
+                }
+                LocalDateTime date = parse(format, m);
+                if (date == null) continue;
+                found = date;
+                foundAt = m.start();
+                if (first) break;
+            }
+        }
+        return found;
+    }
+
+    private static LocalDateTime parse(DateFormat format, Matcher m) {
+        try {
+            return format.parser().apply(m);
+        } catch (DateTimeException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String normalizeMonth(String month) {
+        String m = month.toLowerCase(Locale.FRENCH);
+        return switch (m) {
+            case "fevrier" -> "février";
+            case "aout" -> "août";
+            case "decembre" -> "décembre";
+            default -> m;
+        };
+    }
+}
@@ -0,0 +1,318 @@
+package app.service;
+
+import app.model.Candidature;
+import app.model.DocumentFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Empreinte SHA-256 de chaque document stocké, toutes candidatures confondues :
+ * un PDF déjà présent est reconnu en O(1) avant d'être déplacé.
+ * Clé d'un document = (id de la candidature, nom du fichier), insensible au renommage du dossier.
+ * L'index est conservé dans .cache/document-hashes.bin avec la taille et la date de chaque
+ * fichier : au démarrage, seuls les documents nouveaux ou modifiés sont relus.
+ * Le rattrapage part de l'index enregistré et ne force aucun chargement de documents :
+ * ceux d'une candidature pas encore chargée sont vus à leur premier chargement.
+ */
+public class DocumentHashIndex {
+
+    private static final int MAGIC = 0x434E4448; // "CNDH"
+    private static final int FORMAT_VERSION = 1;
+
+    public record Location(String candidatureId, String fileName) {
+    }
+
+    private record Stamp(String hash, long size, long lastModified) {
+    }
+
+    // Empreinte relevée au rangement d'un fichier, enregistrée plus tard par add(Pending)
+    public record Pending(Location location, String hash, long size, long lastModified) {
+    }
+
+    private final Path file;
+    // Candidature d'après son id, pour retrouver le fichier déjà stocké
+    private final Function<String, Candidature> candidatures;
+    private final Map<String, Set<Location>> byHash = new HashMap<>();
+    private final Map<Location, Stamp> byLocation = new HashMap<>();
+    private volatile boolean closed;
+    private boolean backfillStarted;
+    // Rattrapage puis documents chargés au fil de l'eau, un fichier à la fois
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "document-hash-backfill");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    public DocumentHashIndex(Path file, Function<String, Candidature> candidatures) {
+        this.file = file;
+        this.candidatures = candidatures;
+    }
+
+    /* =========================
+       RECHERCHE
+       ========================= */
+
+    // Un emplacement où ce contenu est déjà stocké, null sinon
+    public synchronized Location find(String hash) {
+        Set<Location> locations = byHash.get(hash);
+        return locations == null || locations.isEmpty() ? null : locations.iterator().next();
+    }
+
+    // Fichier correspondant à l'emplacement, null si la candidature ou le fichier n'existe plus
+    public Path resolve(Location location) {
+        Candidature c = candidatures.apply(location.candidatureId());
+        Path dossier = c != null ? c.getDossier() : null;
+        if (dossier == null) return null;
+        Path pdf = dossier.resolve(location.fileName());
+        if (Files.exists(pdf)) return pdf;
+        // Supprimé hors de l'application : l'entrée ne doit plus signaler de doublon
+        remove(location);
+        return null;
+    }
+
+    public synchronized int size() {
+        return byLocation.size();
+    }
+
+    // Empreinte de chaque document connu (copie)
+    public synchronized Map<Location, String> hashes() {
+        Map<Location, String> hashes = new HashMap<>(byLocation.size());
+        byLocation.forEach((location, stamp) -> hashes.put(location, stamp.hash()));
+        return hashes;
+    }
+
+    // Exécutée après le rattrapage (même file d'attente) : l'index est alors à jour
+    public void afterBackfill(Runnable task) {
+        submit(task);
+    }
+
+    /* =========================
+       MISE À JOUR
+       ========================= */
+
+    // Fichier tout juste stocké dans le dossier de la candidature
+    public void add(String candidatureId, Path pdf, String hash) {
+        if (candidatureId == null || pdf == null) return;
+        try {
+            add(pending(candidatureId, pdf, hash));
+        } catch (IOException e) {
+            System.err.println("Empreinte non enregistrée pour " + pdf + " : " + e.getMessage());
+        }
+    }
+
+    public void add(Pending pending) {
+        put(pending.location(), new Stamp(pending.hash(), pending.size(), pending.lastModified()));
+    }
+
+    // Relevé immédiat (le dossier peut être renommé avant l'ajout à l'index)
+    public static Pending pending(String candidatureId, Path pdf, String hash) throws IOException {
+        return new Pending(new Location(candidatureId, pdf.getFileName().toString()), hash,
+                Files.size(pdf), Files.getLastModifiedTime(pdf).toMillis());
+    }
+
+    public void remove(Candidature c, DocumentFile doc) {
+        Path pdf = doc.getFichier();
+        if (c.getId() == null || pdf == null) return;
+        remove(new Location(c.getId(), pdf.getFileName().toString()));
+    }
+
+    public synchronized void removeCandidature(Candidature c) {
+        List<Location> owned = byLocation.keySet().stream()
+                .filter(l -> l.candidatureId().equals(c.getId()))
+                .toList();
+        owned.forEach(this::remove);
+    }
+
+    private synchronized void put(Location location, Stamp stamp) {
+        remove(location);
+        byLocation.put(location, stamp);
+        byHash.computeIfAbsent(stamp.hash(), h -> new LinkedHashSet<>()).add(location);
+    }
+
+    private synchronized void remove(Location location) {
+        Stamp old = byLocation.remove(location);
+        if (old == null) return;
+        Set<Location> locations = byHash.get(old.hash());
+        if (locations != null && locations.remove(location) && locations.isEmpty()) byHash.remove(old.hash());
+    }
+
+    /* =========================
+       RATTRAPAGE EN ARRIÈRE-PLAN
+       ========================= */
+
+    // Relit l'index enregistré, revérifie ses fichiers et complète avec les documents déjà chargés
+    public synchronized void startBackfill(List<Candidature> candidatures) {
+        if (backfillStarted) return;
+        backfillStarted = true;
+        submit(() -> backfill(candidatures));
+    }
+
+    // Documents d'une candidature tout juste chargés : empreintes manquantes calculées en arrière-plan
+    public void documentsLoaded(Candidature c) {
+        submit(() -> hashDocuments(c));
+    }
+
+    private void submit(Runnable task) {
+        if (closed) return;
+        try {
+            worker.execute(task);
+        } catch (RejectedExecutionException ignored) {
+            // Fermeture en cours
+        }
+    }
+
+    private void backfill(List<Candidature> candidatures) {
+        Map<Location, Stamp> saved = read();
+        Map<String, Candidature> byId = new HashMap<>();
+        for (Candidature c : candidatures) {
+            if (c.getId() != null) byId.put(c.getId(), c);
+        }
+        boolean changed = false;
+
+        // Entrées enregistrées : fichier retrouvé dans le dossier, relu seulement si taille ou date ont changé
+        for (Map.Entry<Location, Stamp> entry : saved.entrySet()) {
+            if (closed) return;
+            Location location = entry.getKey();
+            Candidature c = byId.get(location.candidatureId());
+            Path dossier = c != null ? c.getDossier() : null;
+            Path pdf = dossier != null ? dossier.resolve(location.fileName()) : null;
+            if (pdf == null || !Files.exists(pdf)) {
+                changed = true;
+                continue;
+            }
+            changed |= refresh(location, pdf, entry.getValue());
+        }
+
+        // Documents déjà en mémoire que l'index ne connaît pas encore (les autres : voir documentsLoaded)
+        for (Candidature c : candidatures) {
+            if (closed) return;
+            if (c.isDocumentsLoaded()) changed |= hashDocuments(c);
+        }
+        if (changed) save();
+    }
+
+    // Vrai si une empreinte a été calculée (index à réenregistrer)
+    private boolean hashDocuments(Candidature c) {
+        if (c.getId() == null) return false;
+        List<DocumentFile> docs;
+        try {
+            docs = new ArrayList<>(c.getDocuments());
+        } catch (RuntimeException e) {
+            System.err.println("Documents illisibles pour " + c.getEntreprise() + " : " + e.getMessage());
+            return false;
+        }
+        boolean changed = false;
+        for (DocumentFile doc : docs) {
+            if (closed) return changed;
+            Path pdf = doc.getFichier();
+            if (pdf == null || !Files.exists(pdf)) continue;
+            Location location = new Location(c.getId(), pdf.getFileName().toString());
+            Stamp known;
+            synchronized (this) {
+                known = byLocation.get(location);
+            }
+            changed |= refresh(location, pdf, known);
+        }
+        return changed;
+    }
+
+    // Empreinte reprise de known si le fichier n'a pas changé, recalculée sinon
+    private boolean refresh(Location location, Path pdf, Stamp known) {
+        try {
+            long size = Files.size(pdf);
+            long modified = Files.getLastModifiedTime(pdf).toMillis();
+            boolean hashed = false;
+            Stamp stamp = known;
+            if (stamp == null || stamp.size() != size || stamp.lastModified() != modified) {
+                stamp = new Stamp(ContentHasher.sha256(pdf), size, modified);
+                hashed = true;
+            }
+            synchronized (this) {
+                // Ajouté entre-temps par un import : l'entrée récente l'emporte
+                Stamp current = byLocation.get(location);
+                if (current != null && current != known) return false;
+                if (current == null || hashed) put(location, stamp);
+                return hashed;
+            }
+        } catch (IOException e) {
+            System.err.println("Empreinte impossible : " + pdf + " (" + e.getMessage() + ")");
+            return false;
+        }
+    }
+
+    /* =========================
+       PERSISTANCE
+       ========================= */
+
+    private Map<Location, Stamp> read() {
+        Map<Location, Stamp> saved = new HashMap<>();
+        if (!Files.exists(file)) return saved;
+        try (InputStream is = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(is, 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return saved;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Location location = new Location(in.readUTF(), in.readUTF());
+                saved.put(location, new Stamp(in.readUTF(), in.readLong(), in.readLong()));
+            }
+        } catch (IOException e) {
+            // Index illisible : il sera entièrement recalculé
+            System.err.println("Index des empreintes illisible : " + e.getMessage());
+            saved.clear();
+        }
+        return saved;
+    }
+
+    public void save() {
+        Map<Location, Stamp> snapshot;
+        synchronized (this) {
+            snapshot = new HashMap<>(byLocation);
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream os = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<Location, Stamp> e : snapshot.entrySet()) {
+                    out.writeUTF(e.getKey().candidatureId());
+                    out.writeUTF(e.getKey().fileName());
+                    out.writeUTF(e.getValue().hash());
+                    out.writeLong(e.getValue().size());
+                    out.writeLong(e.getValue().lastModified());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Index des empreintes non enregistré : " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        closed = true;
+        worker.shutdown();
+        save();
+    }
+}
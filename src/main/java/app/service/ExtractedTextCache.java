@@ -0,0 +1,307 @@
+package app.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Texte des PDF et métadonnées dérivées (nombre et taille des pages, texte page par page,
+ * première date détectée), conservés sous .cache/extract/&lt;sha256&gt;.bin.
+ * Clé = empreinte du contenu : un PDF renommé ou déplacé n'est jamais réanalysé,
+ * et PDFBox n'est ouvert que pour les pages pas encore extraites.
+ * Une entrée peut ne contenir que les premières pages (recherche de date arrêtée tôt) :
+ * load() complète le texte au besoin.
+ */
+public class ExtractedTextCache {
+
+    private static final int MAGIC = 0x434E5458; // "CNTX"
+    private static final int FORMAT_VERSION = 2;
+    private static final long NULL_SECONDS = Long.MIN_VALUE;
+    private static final int RECENT_ENTRIES = 32;
+
+    /**
+     * Contenu d'un PDF : tailles affichées de toutes les pages en points (rotation comprise),
+     * texte des premières pages extraites (toutes si isComplete()) et première date trouvée
+     * dans ce texte (page numérotée à partir de 1, 0 si aucune).
+     */
+    public record Entry(String hash, float[] pageWidths, float[] pageHeights, List<String> pages,
+                        LocalDateTime firstDate, int firstDatePage) {
+
+        public int pageCount() {
+            return pageWidths.length;
+        }
+
+        public boolean isComplete() {
+            return pages.size() == pageWidths.length;
+        }
+
+        // Texte des pages extraites (document entier si l'entrée vient de load())
+        public String text() {
+            return String.join("", pages);
+        }
+    }
+
+    /**
+     * Lecture page par page d'un PDF : les pages déjà en cache sont servies sans ouvrir le document,
+     * les suivantes sont extraites à la demande. À la fermeture, les pages nouvellement extraites
+     * sont ajoutées à l'entrée.
+     */
+    public final class Pages implements AutoCloseable {
+
+        private final Path pdf;
+        private final String hash;
+        private final float[] widths;
+        private final float[] heights;
+        private final List<String> texts;
+        private LocalDateTime firstDate;
+        private int firstDatePage;
+        private PDDocument document;
+        private PDFTextStripper stripper;
+        private boolean changed;
+
+        private Pages(Path pdf, String hash, Entry cached) throws IOException {
+            this.pdf = pdf;
+            this.hash = hash;
+            if (cached != null) {
+                widths = cached.pageWidths();
+                heights = cached.pageHeights();
+                texts = new ArrayList<>(cached.pages());
+                firstDate = cached.firstDate();
+                firstDatePage = cached.firstDatePage();
+                return;
+            }
+            // Tailles lues dans le dictionnaire des pages, sans extraire de texte
+            document = PDDocument.load(pdf.toFile());
+            int pages = document.getNumberOfPages();
+            widths = new float[pages];
+            heights = new float[pages];
+            for (int i = 0; i < pages; i++) {
+                PDPage page = document.getPage(i);
+                PDRectangle box = page.getCropBox();
+                boolean rotated = page.getRotation() % 180 != 0;
+                widths[i] = rotated ? box.getHeight() : box.getWidth();
+                heights[i] = rotated ? box.getWidth() : box.getHeight();
+            }
+            texts = new ArrayList<>(pages);
+            changed = true;
+        }
+
+        public int count() {
+            return widths.length;
+        }
+
+        // Texte de la page (numérotée à partir de 1) ; les pages précédentes sont extraites si besoin
+        public String text(int page) throws IOException {
+            while (texts.size() < page) {
+                if (document == null) document = PDDocument.load(pdf.toFile());
+                if (stripper == null) stripper = new PDFTextStripper();
+                int next = texts.size() + 1;
+                stripper.setStartPage(next);
+                stripper.setEndPage(next);
+                String text = stripper.getText(document);
+                texts.add(text);
+                if (firstDate == null) {
+                    firstDate = DateExtractionService.findDate(text, true);
+                    if (firstDate != null) firstDatePage = next;
+                }
+                changed = true;
+            }
+            return texts.get(page - 1);
+        }
+
+        public Entry entry() {
+            return new Entry(hash, widths, heights, Collections.unmodifiableList(new ArrayList<>(texts)),
+                    firstDate, firstDatePage);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (changed) write(entry());
+            } finally {
+                if (document != null) document.close();
+            }
+        }
+    }
+
+    private static ExtractedTextCache defaultCache;
+
+    private final Path dir;
+    // Dernières entrées lues : le viewer et l'index redemandent souvent le même document
+    private final Map<String, Entry> recent = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > RECENT_ENTRIES;
+        }
+    };
+
+    private long hits;
+    private long misses;
+
+    public ExtractedTextCache(Path dir) {
+        this.dir = dir;
+    }
+
+    public static synchronized ExtractedTextCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new ExtractedTextCache(FileSystemService.getRoot().resolve(".cache").resolve("extract"));
+        }
+        return defaultCache;
+    }
+
+    /* =========================
+       LECTURE
+       ========================= */
+
+    // Entrée existante, null si le PDF n'a jamais été analysé
+    public Entry get(Path pdf) throws IOException {
+        String hash = ContentHasher.sha256(pdf);
+        Entry entry = read(hash);
+        synchronized (this) {
+            if (entry != null) hits++;
+            else misses++;
+        }
+        return entry;
+    }
+
+    // Entrée complète (texte de toutes les pages), extraite puis enregistrée si besoin
+    public Entry load(Path pdf) throws IOException {
+        Entry entry = get(pdf);
+        if (entry != null && entry.isComplete()) return entry;
+
+        try (Pages pages = open(pdf, entry)) {
+            if (pages.count() > 0) pages.text(pages.count());
+            return pages.entry();
+        }
+    }
+
+    // Entrée d'un contenu connu par son empreinte, sans lire le PDF ; null si jamais analysé
+    public Entry find(String hash) throws IOException {
+        return read(hash);
+    }
+
+    // Lecture page par page : seules les pages demandées sont extraites (voir Pages)
+    public Pages open(Path pdf) throws IOException {
+        return open(pdf, get(pdf));
+    }
+
+    private Pages open(Path pdf, Entry cached) throws IOException {
+        return new Pages(pdf, cached != null ? cached.hash() : ContentHasher.sha256(pdf), cached);
+    }
+
+    private Entry read(String hash) throws IOException {
+        synchronized (this) {
+            Entry known = recent.get(hash);
+            if (known != null) return known;
+        }
+        Path file = file(hash);
+        if (!Files.exists(file)) return null;
+
+        Entry entry;
+        try (InputStream is = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(is, 1 << 16))) {
+            // Format inconnu (ancienne version) : l'entrée sera recalculée
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return null;
+            int pages = in.readInt();
+            float[] widths = new float[pages];
+            float[] heights = new float[pages];
+            for (int i = 0; i < pages; i++) {
+                widths[i] = in.readFloat();
+                heights[i] = in.readFloat();
+            }
+            int extracted = in.readInt();
+            List<String> texts = new ArrayList<>(extracted);
+            for (int i = 0; i < extracted; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                texts.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            long seconds = in.readLong();
+            int datePage = in.readInt();
+            LocalDateTime date = seconds == NULL_SECONDS ? null : LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+            entry = new Entry(hash, widths, heights, Collections.unmodifiableList(texts), date, datePage);
+        }
+        synchronized (this) {
+            recent.put(hash, entry);
+        }
+        return entry;
+    }
+
+    /* =========================
+       ÉCRITURE
+       ========================= */
+
+    private void write(Entry entry) {
+        synchronized (this) {
+            // Entrée plus complète écrite entre-temps par une autre lecture du même contenu
+            Entry known = recent.get(entry.hash());
+            if (known != null && known.pages().size() > entry.pages().size()) return;
+        }
+        Path file = file(entry.hash());
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().threadId() + ".tmp");
+            try (OutputStream os = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(entry.pageCount());
+                for (int i = 0; i < entry.pageCount(); i++) {
+                    out.writeFloat(entry.pageWidths()[i]);
+                    out.writeFloat(entry.pageHeights()[i]);
+                }
+                out.writeInt(entry.pages().size());
+                for (int i = 0; i < entry.pages().size(); i++) {
+                    byte[] bytes = entry.pages().get(i).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                out.writeLong(entry.firstDate() != null ? entry.firstDate().toEpochSecond(ZoneOffset.UTC) : NULL_SECONDS);
+                out.writeInt(entry.firstDatePage());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Le cache n'est qu'une optimisation : l'entrée reste utilisable en mémoire
+            System.err.println("Texte extrait non conservé (" + entry.hash() + ") : " + e.getMessage());
+        }
+        synchronized (this) {
+            recent.put(entry.hash(), entry);
+        }
+    }
+
+    // Deux premiers caractères en sous-dossier : pas de répertoire à des milliers d'entrées
+    private Path file(String hash) {
+        return dir.resolve(hash.substring(0, 2)).resolve(hash + ".bin");
+    }
+
+    /* =========================
+       STATISTIQUES
+       ========================= */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+}
@@ -0,0 +1,130 @@
+package app.service;
+
+import app.model.Candidature;
+import app.model.StatutCandidature;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index des filtres de la barre d'outils : un bitmap par statut, par mois d'envoi,
+ * pour « avec PDF » et « avec réponse ». Chaque candidature occupe un numéro stable ;
+ * combiner les filtres revient à faire un ET entre bitmaps, sans parcourir la liste.
+ */
+public class FacetIndex {
+
+    private final Map<Candidature, Integer> slots = new IdentityHashMap<>();
+    private final List<Candidature> bySlot = new ArrayList<>();
+    private final BitSet free = new BitSet();
+
+    private final BitSet all = new BitSet();
+    private final Map<StatutCandidature, BitSet> byStatut = new EnumMap<>(StatutCandidature.class);
+    private final BitSet[] byMonth = new BitSet[13];
+    private final BitSet withDocuments = new BitSet();
+    private final BitSet responded = new BitSet();
+
+    public FacetIndex() {
+        for (StatutCandidature s : StatutCandidature.values()) byStatut.put(s, new BitSet());
+        for (int m = 1; m <= 12; m++) byMonth[m] = new BitSet();
+    }
+
+    /* =========================
+       MISE À JOUR
+       ========================= */
+    public void addAll(Collection<? extends Candidature> candidatures) {
+        candidatures.forEach(this::add);
+    }
+
+    public void add(Candidature c) {
+        if (slots.containsKey(c)) {
+            update(c);
+            return;
+        }
+        int slot = free.nextSetBit(0);
+        if (slot >= 0) {
+            free.clear(slot);
+            bySlot.set(slot, c);
+        } else {
+            slot = bySlot.size();
+            bySlot.add(c);
+        }
+        slots.put(c, slot);
+        all.set(slot);
+        index(c, slot);
+    }
+
+    public void remove(Candidature c) {
+        Integer slot = slots.remove(c);
+        if (slot == null) return;
+        clearBits(slot);
+        all.clear(slot);
+        bySlot.set(slot, null);
+        free.set(slot);
+    }
+
+    // Statut, date d'envoi ou documents modifiés : le numéro ne change pas, seuls les bits
+    public void update(Candidature c) {
+        Integer slot = slots.get(c);
+        if (slot == null) return;
+        clearBits(slot);
+        index(c, slot);
+    }
+
+    private void index(Candidature c, int slot) {
+        StatutCandidature statut = c.getStatut();
+        if (statut != null) byStatut.get(statut).set(slot);
+        if (statut != StatutCandidature.EN_ATTENTE) responded.set(slot);
+
+        LocalDate date = c.getDateEnvoi();
+        if (date != null) byMonth[date.getMonthValue()].set(slot);
+
+        // Nombre de documents connu sans charger la liste
+        if (c.getDocumentCount() > 0) withDocuments.set(slot);
+    }
+
+    private void clearBits(int slot) {
+        byStatut.values().forEach(b -> b.clear(slot));
+        for (int m = 1; m <= 12; m++) byMonth[m].clear(slot);
+        withDocuments.clear(slot);
+        responded.clear(slot);
+    }
+
+    /* =========================
+       SÉLECTION
+       ========================= */
+
+    // statut TOUTES ou null et mois 0 : pas de filtre sur ce critère
+    public BitSet select(StatutCandidature statut, int month, boolean avecDocuments, boolean avecReponse) {
+        BitSet result = (BitSet) all.clone();
+        if (statut != null && statut != StatutCandidature.TOUTES) result.and(byStatut.get(statut));
+        if (month >= 1 && month <= 12) result.and(byMonth[month]);
+        if (avecDocuments) result.and(withDocuments);
+        if (avecReponse) result.and(responded);
+        return result;
+    }
+
+    // Bitmap d'un ensemble de candidatures (résultat d'une recherche texte par exemple)
+    public BitSet toBitSet(Collection<Candidature> candidatures) {
+        BitSet result = new BitSet(bySlot.size());
+        for (Candidature c : candidatures) {
+            Integer slot = slots.get(c);
+            if (slot != null) result.set(slot);
+        }
+        return result;
+    }
+
+    public boolean contains(BitSet selection, Candidature c) {
+        Integer slot = slots.get(c);
+        return slot != null && selection.get(slot);
+    }
+
+    public int size() {
+        return slots.size();
+    }
+}
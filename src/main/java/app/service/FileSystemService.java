@@ -7,12 +7,18 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class FileSystemService {
 
+    private static final Pattern DATE_PREFIX = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2}) ");
+
     private static final Path ROOT =
             Paths.get(System.getProperty("user.home"), "Candidatures");
 
@@ -20,6 +26,11 @@ public class FileSystemService {
         return ROOT;
     }
 
+    // Dossier surveillé : les PDF déposés ici sont proposés à l'import
+    public static Path getInbox() {
+        return ROOT.resolve("A importer");
+    }
+
     public static void init() {
         try {
             Files.createDirectories(ROOT);
@@ -49,22 +60,16 @@ public class FileSystemService {
 
     public static Path renameCandidatureFolderWithOldestPdfDate(Candidature c) throws IOException {
 
-        if (c.getDocuments() == null || c.getDocuments().isEmpty()) {
-            return c.getDossier();
+        if (c.getDossier() == null) {
+            return null;
         }
 
-        var oldestOpt = c.getDocuments().stream()
-                .map(DocumentFile::getDateMail)
-                .filter(Objects::nonNull)
-                .min(LocalDateTime::compareTo);
-
-        if (oldestOpt.isEmpty()) {
+        LocalDate oldest = oldestPdfDate(c);
+        if (oldest == null) {
             return c.getDossier();
         }
 
-        String datePrefix = oldestOpt.get()
-                .toLocalDate()
-                .format(DateTimeFormatter.ISO_LOCAL_DATE);
+        String datePrefix = oldest.format(DateTimeFormatter.ISO_LOCAL_DATE);
 
         String entreprise = c.getEntreprise()
                 .replaceAll("[\\\\/:*?\"<>|]", "")
@@ -85,17 +90,34 @@ public class FileSystemService {
 
         Files.move(oldPath, newPath);
 
-        // 🔴 POINT CRITIQUE : mettre à jour les chemins des documents
-        for (DocumentFile doc : c.getDocuments()) {
-            Path oldFile = doc.getFichier();
-            if (oldFile != null) {
-                Path newFile = newPath.resolve(oldFile.getFileName());
-                doc.setFichier(newFile);
+        // 🔴 POINT CRITIQUE : les chemins des documents sont relatifs au dossier,
+        // ils suivent donc le nouveau dossier sans mise à jour
+        c.setDossier(newPath);
+        return newPath;
+    }
+
+    // Documents pas encore chargés : la date en tête du nom actuel est celle du plus ancien PDF
+    // (posée au dernier renommage), inutile de les lire
+    private static LocalDate oldestPdfDate(Candidature c) {
+        if (!c.isDocumentsLoaded()) {
+            Matcher m = DATE_PREFIX.matcher(c.getDossier().getFileName().toString());
+            if (m.find()) {
+                try {
+                    return LocalDate.parse(m.group(1));
+                } catch (DateTimeParseException ignored) {}
             }
         }
 
-        c.setDossier(newPath);
-        return newPath;
+        if (c.getDocumentCount() == 0) {
+            return null;
+        }
+
+        return c.getDocuments().stream()
+                .map(DocumentFile::getDateMail)
+                .filter(Objects::nonNull)
+                .min(LocalDateTime::compareTo)
+                .map(LocalDateTime::toLocalDate)
+                .orElse(null);
     }
 
 }
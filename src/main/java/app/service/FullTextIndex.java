@@ -0,0 +1,272 @@
+package app.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Index inversé positionnel du texte des documents PDF.
+ * Chaque document est identifié par une clé (candidature + fichier) ; les résultats
+ * sont agrégés par candidature et classés (BM25, bonus quand les mots se suivent).
+ * Une expression entre guillemets doit apparaître telle quelle ; le dernier mot
+ * de la saisie est traité comme un préfixe pour la recherche au fil de la frappe.
+ */
+public class FullTextIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PHRASE_BOOST = 1.5;
+    private static final int MAX_PREFIX_EXPANSION = 64;
+
+    public record Hit(String candidatureId, double score) {
+    }
+
+    private record Document(String candidatureId, String key, int length) {
+    }
+
+    // Pour un terme : documents (croissants) et positions de chaque occurrence
+    private static final class Postings {
+        int[] docs = new int[2];
+        int[] starts = new int[3];
+        int[] positions = new int[4];
+        int size;
+        int positionCount;
+
+        void add(int doc, int[] pos, int count) {
+            if (size + 1 >= starts.length) {
+                docs = Arrays.copyOf(docs, starts.length * 2);
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            if (positionCount + count > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(positions.length * 2, positionCount + count));
+            }
+            docs[size] = doc;
+            starts[size] = positionCount;
+            System.arraycopy(pos, 0, positions, positionCount, count);
+            positionCount += count;
+            starts[++size] = positionCount;
+        }
+
+        int[] positionsOf(int index) {
+            return Arrays.copyOfRange(positions, starts[index], starts[index + 1]);
+        }
+
+        // Retire les documents supprimés (les numéros des documents restants ne changent pas)
+        void compact(BitSet alive) {
+            int n = 0;
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (!alive.get(docs[i])) continue;
+                int from = starts[i];
+                int length = starts[i + 1] - from;
+                System.arraycopy(positions, from, positions, count, length);
+                docs[n] = docs[i];
+                starts[n++] = count;
+                count += length;
+            }
+            size = n;
+            positionCount = count;
+            starts[n] = count;
+        }
+    }
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<Document> documents = new ArrayList<>();
+    private final BitSet alive = new BitSet();
+    private long totalLength;
+    private int deadCount;
+
+    /* =========================
+       MISE À JOUR
+       ========================= */
+    public synchronized void add(String candidatureId, String key, String text) {
+        remove(key);
+        List<String> tokens = tokenize(text);
+        int slot = documents.size();
+        documents.add(new Document(candidatureId, key, tokens.size()));
+        slots.put(key, slot);
+        alive.set(slot);
+        totalLength += tokens.size();
+
+        Map<String, int[]> positions = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            int count = counts.merge(token, 1, Integer::sum);
+            int[] pos = positions.computeIfAbsent(token, t -> new int[4]);
+            if (count > pos.length) positions.put(token, pos = Arrays.copyOf(pos, pos.length * 2));
+            pos[count - 1] = i;
+        }
+        positions.forEach((token, pos) ->
+                terms.computeIfAbsent(token, t -> new Postings()).add(slot, pos, counts.get(token)));
+    }
+
+    public synchronized void remove(String key) {
+        Integer slot = slots.remove(key);
+        if (slot == null) return;
+        alive.clear(slot);
+        totalLength -= documents.get(slot).length();
+        deadCount++;
+
+        if (deadCount > 256 && deadCount > slots.size()) compact();
+    }
+
+    public synchronized void removeCandidature(String candidatureId) {
+        for (int slot = alive.nextSetBit(0); slot >= 0; slot = alive.nextSetBit(slot + 1)) {
+            Document doc = documents.get(slot);
+            if (doc.candidatureId().equals(candidatureId)) remove(doc.key());
+        }
+    }
+
+    public synchronized boolean contains(String key) {
+        return slots.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    private void compact() {
+        terms.values().forEach(p -> p.compact(alive));
+        terms.values().removeIf(p -> p.size == 0);
+        deadCount = 0;
+    }
+
+    /* =========================
+       RECHERCHE
+       ========================= */
+
+    // Candidatures dont un document contient tous les mots de la saisie, meilleur score en tête
+    public synchronized List<Hit> search(String query) {
+        if (query == null || query.isBlank() || slots.isEmpty()) return List.of();
+
+        boolean phrase = query.strip().startsWith("\"");
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) return List.of();
+
+        // Occurrences par document pour chaque mot (le dernier en préfixe, sauf expression exacte)
+        List<Map<Integer, int[]>> occurrences = new ArrayList<>();
+        for (int i = 0; i < words.size(); i++) {
+            boolean prefix = !phrase && i == words.size() - 1;
+            Map<Integer, int[]> occ = occurrencesOf(words.get(i), prefix);
+            if (occ.isEmpty()) return List.of();
+            occurrences.add(occ);
+        }
+
+        int smallest = 0;
+        for (int i = 1; i < occurrences.size(); i++) {
+            if (occurrences.get(i).size() < occurrences.get(smallest).size()) smallest = i;
+        }
+
+        int liveCount = slots.size();
+        double avgLength = Math.max(1.0, (double) totalLength / liveCount);
+        double[] idf = new double[occurrences.size()];
+        for (int i = 0; i < idf.length; i++) {
+            int df = occurrences.get(i).size();
+            idf[i] = Math.log(1 + (liveCount - df + 0.5) / (df + 0.5));
+        }
+
+        Map<String, Double> scores = new HashMap<>();
+        candidates:
+        for (int slot : occurrences.get(smallest).keySet()) {
+            int[][] positions = new int[occurrences.size()][];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = occurrences.get(i).get(slot);
+                if (positions[i] == null) continue candidates;
+            }
+            boolean adjacent = positions.length > 1 && isPhrase(positions);
+            if (phrase && positions.length > 1 && !adjacent) continue;
+
+            double norm = K1 * (1 - B + B * documents.get(slot).length() / avgLength);
+            double score = 0;
+            for (int i = 0; i < positions.length; i++) {
+                int tf = positions[i].length;
+                score += idf[i] * tf * (K1 + 1) / (tf + norm);
+            }
+            if (adjacent) score *= PHRASE_BOOST;
+            scores.merge(documents.get(slot).candidatureId(), score, Double::sum);
+        }
+
+        List<Hit> hits = new ArrayList<>(scores.size());
+        scores.forEach((id, score) -> hits.add(new Hit(id, score)));
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+        return hits;
+    }
+
+    private Map<Integer, int[]> occurrencesOf(String word, boolean prefix) {
+        Collection<Postings> matching;
+        if (prefix) {
+            NavigableMap<String, Postings> range = terms.subMap(word, true, word + Character.MAX_VALUE, false);
+            matching = range.size() > MAX_PREFIX_EXPANSION
+                    ? List.of(terms.getOrDefault(word, new Postings()))
+                    : range.values();
+        } else {
+            Postings p = terms.get(word);
+            matching = p != null ? List.of(p) : List.of();
+        }
+
+        Map<Integer, int[]> occ = new HashMap<>();
+        for (Postings p : matching) {
+            for (int i = 0; i < p.size; i++) {
+                int slot = p.docs[i];
+                if (!alive.get(slot)) continue;
+                occ.merge(slot, p.positionsOf(i), FullTextIndex::mergeSorted);
+            }
+        }
+        return occ;
+    }
+
+    // Vrai si les mots apparaissent consécutivement, dans l'ordre, au moins une fois
+    private static boolean isPhrase(int[][] positions) {
+        for (int start : positions[0]) {
+            boolean match = true;
+            for (int i = 1; i < positions.length && match; i++) {
+                match = Arrays.binarySearch(positions[i], start + i) >= 0;
+            }
+            if (match) return true;
+        }
+        return false;
+    }
+
+    private static int[] mergeSorted(int[] a, int[] b) {
+        int[] merged = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, merged, a.length, b.length);
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    /* =========================
+       ANALYSE DU TEXTE
+       ========================= */
+
+    // Minuscules sans accents, découpé sur tout ce qui n'est ni lettre ni chiffre
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean word = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,212 @@
+package app.service;
+
+import app.model.Candidature;
+import app.model.DocumentFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Recherche plein texte dans les PDF des candidatures.
+ * Aucun texte n'est conservé ici : il vient d'ExtractedTextCache, retrouvé par l'empreinte
+ * de chaque document (DocumentHashIndex). Au démarrage l'index est reconstruit depuis ce cache
+ * sans relire les PDF ni charger les listes de documents ; seuls les documents jamais extraits
+ * sont analysés, en arrière-plan.
+ */
+public class FullTextSearchService {
+
+    private static final int PROGRESS_STEP = 200;
+
+    // Ancien cache de textes par chemin (.cache/text), remplacé par ExtractedTextCache
+    private final Path legacyTextDir;
+    private final DocumentHashIndex hashes;
+    private final FullTextIndex index = new FullTextIndex();
+
+    private volatile Runnable onIndexChanged = () -> {};
+    private volatile boolean closed;
+    private boolean backfillStarted;
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "fulltext-indexer");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    public FullTextSearchService(Path cacheDir, DocumentHashIndex hashes) {
+        this.legacyTextDir = cacheDir.resolve("text");
+        this.hashes = hashes;
+    }
+
+    public void setOnIndexChanged(Runnable onIndexChanged) {
+        this.onIndexChanged = onIndexChanged != null ? onIndexChanged : () -> {};
+    }
+
+    public List<FullTextIndex.Hit> search(String query) {
+        return index.search(query);
+    }
+
+    public FullTextIndex getIndex() {
+        return index;
+    }
+
+    /* =========================
+       IMPORT / SUPPRESSION
+       ========================= */
+
+    // Texte déjà extrait à l'import : indexé immédiatement
+    public void indexDocument(Candidature c, DocumentFile doc, String text) {
+        if (add(c, doc, text)) onIndexChanged.run();
+    }
+
+    // Import par lot : l'import ne lit que le début des PDF (date), le texte complet est
+    // extrait ici en arrière-plan, avec une seule notification pour tout le lot
+    public void indexInBackground(Candidature c, List<DocumentFile> documents) {
+        List<DocumentFile> docs = List.copyOf(documents);
+        submit(() -> {
+            if (indexDocuments(c, docs, false) > 0) onIndexChanged.run();
+        });
+    }
+
+    // Documents d'une candidature tout juste chargés : ceux que l'index ne connaît pas sont extraits
+    public void documentsLoaded(Candidature c) {
+        submit(() -> {
+            if (indexDocuments(c, new ArrayList<>(c.getDocuments()), true) > 0) onIndexChanged.run();
+        });
+    }
+
+    private boolean add(Candidature c, DocumentFile doc, String text) {
+        if (c.getId() == null || doc.getFichier() == null || text == null) return false;
+        index.add(c.getId(), key(c.getId(), doc.getFichier().getFileName().toString()), text);
+        return true;
+    }
+
+    public void removeDocument(Candidature c, DocumentFile doc) {
+        if (c.getId() == null || doc.getFichier() == null) return;
+        index.remove(key(c.getId(), doc.getFichier().getFileName().toString()));
+    }
+
+    public void removeCandidature(Candidature c) {
+        if (c.getId() == null) return;
+        index.removeCandidature(c.getId());
+    }
+
+    /* =========================
+       RATTRAPAGE EN ARRIÈRE-PLAN
+       ========================= */
+
+    // Après le rattrapage des empreintes : chaque document connu est indexé depuis le cache de texte
+    public synchronized void startBackfill(List<Candidature> candidatures) {
+        if (backfillStarted) return;
+        backfillStarted = true;
+        List<Candidature> list = List.copyOf(candidatures);
+        hashes.afterBackfill(() -> submit(() -> backfill(list)));
+    }
+
+    public void close() {
+        closed = true;
+        indexer.shutdownNow();
+    }
+
+    private void submit(Runnable task) {
+        if (closed) return;
+        try {
+            indexer.execute(task);
+        } catch (RejectedExecutionException ignored) {
+            // Fermeture en cours
+        }
+    }
+
+    private void backfill(List<Candidature> candidatures) {
+        deleteLegacyTexts();
+
+        Map<String, Candidature> byId = new HashMap<>();
+        for (Candidature c : candidatures) {
+            if (c.getId() != null) byId.put(c.getId(), c);
+        }
+
+        // 1. Documents dont l'empreinte est connue : texte relu par empreinte, PDF extrait s'il manque
+        int extracted = 0;
+        boolean indexed = false;
+        ExtractedTextCache texts = ExtractedTextCache.getDefault();
+        for (Map.Entry<DocumentHashIndex.Location, String> entry : hashes.hashes().entrySet()) {
+            if (closed) return;
+            DocumentHashIndex.Location location = entry.getKey();
+            Candidature c = byId.get(location.candidatureId());
+            if (c == null) continue;
+            String key = key(c.getId(), location.fileName());
+            if (index.contains(key)) continue;
+            try {
+                ExtractedTextCache.Entry cached = texts.find(entry.getValue());
+                String text;
+                if (cached != null && cached.isComplete()) {
+                    text = cached.text();
+                } else {
+                    Path pdf = c.getDossier() != null ? c.getDossier().resolve(location.fileName()) : null;
+                    if (pdf == null || !Files.exists(pdf)) continue;
+                    text = extractText(pdf);
+                    if (++extracted % PROGRESS_STEP == 0) onIndexChanged.run();
+                }
+                index.add(c.getId(), key, text);
+                indexed = true;
+            } catch (IOException e) {
+                System.err.println("Texte illisible pour " + location.fileName() + " : " + e.getMessage());
+            }
+        }
+
+        // 2. Documents déjà en mémoire sans empreinte (les autres : voir documentsLoaded)
+        for (Candidature c : candidatures) {
+            if (closed) return;
+            if (c.getId() != null && c.isDocumentsLoaded()) {
+                indexed |= indexDocuments(c, new ArrayList<>(c.getDocuments()), true) > 0;
+            }
+        }
+        if (indexed) onIndexChanged.run();
+    }
+
+    // Nombre de documents ajoutés à l'index (skipKnown : ceux déjà indexés sont laissés tels quels)
+    private int indexDocuments(Candidature c, List<DocumentFile> docs, boolean skipKnown) {
+        int added = 0;
+        for (DocumentFile doc : docs) {
+            if (closed) return added;
+            Path pdf = doc.getFichier();
+            if (c.getId() == null || pdf == null) continue;
+            if (skipKnown && index.contains(key(c.getId(), pdf.getFileName().toString()))) continue;
+            if (!Files.exists(pdf)) continue;
+            try {
+                if (add(c, doc, extractText(pdf))) added++;
+            } catch (IOException e) {
+                System.err.println("Extraction impossible : " + pdf + " (" + e.getMessage() + ")");
+            }
+        }
+        return added;
+    }
+
+    private void deleteLegacyTexts() {
+        if (!Files.isDirectory(legacyTextDir)) return;
+        try {
+            FileSystemService.deleteRecursively(legacyTextDir);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ancien cache de texte non supprimé : " + e.getMessage());
+        }
+    }
+
+    /* =========================
+       EXTRACTION
+       ========================= */
+    // Texte déjà extrait d'un PDF de même contenu : relu depuis le cache, sans PDFBox
+    public static String extractText(Path pdf) throws IOException {
+        return ExtractedTextCache.getDefault().load(pdf).text();
+    }
+
+    private static String key(String candidatureId, String fileName) {
+        return candidatureId + "/" + fileName;
+    }
+}
@@ -0,0 +1,353 @@
+package app.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Boîte de réception : dossier surveillé (WatchService) où l'on « imprime en PDF » les mails.
+ * Un fichier n'est pris en compte qu'une fois stable (taille et date inchangées pendant
+ * QUIET_MILLIS, fin de PDF présente) : les fichiers en cours d'écriture sont ignorés.
+ * Les fichiers stables passent par une file bornée vers un thread d'analyse (texte, date),
+ * puis attendent d'être rattachés à une candidature. Les arrivées sont publiées par lots :
+ * une rafale de 200 PDF ne déclenche que quelques rafraîchissements de l'interface.
+ */
+public class InboxWatcher {
+
+    private static final long POLL_MILLIS = 250;
+    private static final long QUIET_MILLIS = 1500;
+    // Sans marqueur %%EOF au bout de ce délai, le PDF est accepté tel quel
+    private static final long MAX_WAIT_MILLIS = 30_000;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int BATCH_SIZE = 50;
+    private static final int TAIL_BYTES = 1024;
+
+    // PDF prêt à être importé : date détectée (null si aucune) et empreinte du contenu
+    public record Item(Path file, String hash, LocalDateTime date) {
+    }
+
+    // Taille et date de modification d'un fichier au moment où il a été accepté
+    private record Stamp(long size, long modified) {
+    }
+
+    // Fichier vu mais pas encore stable
+    private static final class Pending {
+        long size;
+        long modified;
+        long lastChange;
+        final long firstSeen;
+
+        Pending(long now) {
+            this.size = -1;
+            this.modified = -1;
+            this.lastChange = now;
+            this.firstSeen = now;
+        }
+    }
+
+    private final Path dir;
+    private final DateExtractionService dates;
+    private final ExtractedTextCache texts;
+    private final Runnable onChanged;
+
+    // Thread de surveillance uniquement
+    private final Map<Path, Pending> pending = new HashMap<>();
+    // Fichiers stables en attente d'analyse : file bornée, le surplus attend le tour suivant
+    private final BlockingQueue<Path> toAnalyse = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<Path, Item> ready = new LinkedHashMap<>();
+    // Fichiers confiés à l'analyse ou prêts, pour ne pas les reprendre, avec leur taille et date d'alors
+    private final Map<Path, Stamp> accepted = new HashMap<>();
+    private final AtomicBoolean notifyScheduled = new AtomicBoolean();
+
+    private volatile boolean closed;
+    private WatchService watchService;
+    private Thread watcher;
+    private Thread analyser;
+
+    public InboxWatcher(Path dir, Runnable onChanged) {
+        this(dir, DateExtractionService.getDefault(), ExtractedTextCache.getDefault(), onChanged);
+    }
+
+    public InboxWatcher(Path dir, DateExtractionService dates, ExtractedTextCache texts, Runnable onChanged) {
+        this.dir = dir;
+        this.dates = dates;
+        this.texts = texts;
+        this.onChanged = onChanged;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    /* =========================
+       CYCLE DE VIE
+       ========================= */
+
+    public synchronized void start() {
+        if (watcher != null) return;
+        try {
+            Files.createDirectories(dir);
+            watchService = dir.getFileSystem().newWatchService();
+            dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        } catch (IOException e) {
+            System.err.println("Boîte de réception non surveillée : " + dir + " (" + e.getMessage() + ")");
+            return;
+        }
+
+        watcher = new Thread(this::watch, "inbox-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        analyser = new Thread(this::analyse, "inbox-analyse");
+        analyser.setDaemon(true);
+        analyser.setPriority(Thread.MIN_PRIORITY);
+        analyser.start();
+    }
+
+    public synchronized void close() {
+        closed = true;
+        if (watcher != null) watcher.interrupt();
+        if (analyser != null) analyser.interrupt();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /* =========================
+       FICHIERS PRÊTS
+       ========================= */
+
+    // Copie des PDF analysés, dans l'ordre d'arrivée ; réarme la notification
+    public List<Item> pending() {
+        notifyScheduled.set(false);
+        synchronized (ready) {
+            return new ArrayList<>(ready.values());
+        }
+    }
+
+    // Un seul appel à onChanged tant que l'interface n'a pas relu la liste
+    private void changed() {
+        if (notifyScheduled.compareAndSet(false, true)) onChanged.run();
+    }
+
+    /* =========================
+       SURVEILLANCE
+       ========================= */
+
+    private void watch() {
+        rescan();
+        try {
+            while (!closed) {
+                WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW) {
+                            // Trop d'événements d'un coup : on relit simplement le dossier
+                            rescan();
+                            continue;
+                        }
+                        Path file = dir.resolve((Path) event.context());
+                        if (!isPdf(file)) continue;
+                        if (event.kind() == ENTRY_DELETE) {
+                            forget(file);
+                            continue;
+                        }
+                        // PDF déjà accepté puis réécrit sur place : empreinte et date périmées, analysé à nouveau
+                        if (rewritten(file)) forget(file);
+                        pending.computeIfAbsent(file, f -> new Pending(now())).lastChange = now();
+                    }
+                    key.reset();
+                }
+                checkPending();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Fermeture
+        }
+    }
+
+    private void rescan() {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(Files::isRegularFile).filter(InboxWatcher::isPdf)
+                    .forEach(f -> pending.computeIfAbsent(f, p -> new Pending(now())));
+        } catch (IOException e) {
+            System.err.println("Boîte de réception illisible : " + e.getMessage());
+        }
+        // Suppressions éventuellement perdues avec les événements en trop
+        List<Path> gone;
+        synchronized (ready) {
+            gone = accepted.keySet().stream().filter(f -> !Files.exists(f)).toList();
+        }
+        gone.forEach(this::forget);
+    }
+
+    // Fichiers silencieux depuis QUIET_MILLIS et complets : confiés à l'analyse
+    private void checkPending() {
+        long now = now();
+        for (Iterator<Map.Entry<Path, Pending>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Pending> e = it.next();
+            Path file = e.getKey();
+            Pending p = e.getValue();
+            if (now - p.lastChange < QUIET_MILLIS) continue;
+
+            long size;
+            long modified;
+            try {
+                size = Files.size(file);
+                modified = Files.getLastModifiedTime(file).toMillis();
+            } catch (IOException ex) {
+                // Disparu ou renommé entre-temps
+                it.remove();
+                continue;
+            }
+            if (size != p.size || modified != p.modified) {
+                p.size = size;
+                p.modified = modified;
+                p.lastChange = now;
+                continue;
+            }
+            if (size == 0 || (!isComplete(file, size) && now - p.firstSeen < MAX_WAIT_MILLIS)) continue;
+
+            synchronized (ready) {
+                if (accepted.containsKey(file)) {
+                    it.remove();
+                    continue;
+                }
+                // File pleine : le fichier reste en attente jusqu'au prochain tour
+                if (!toAnalyse.offer(file)) return;
+                accepted.put(file, new Stamp(size, modified));
+            }
+            it.remove();
+        }
+    }
+
+    // Taille ou date changée depuis l'acceptation (un simple accès en lecture ne compte pas)
+    private boolean rewritten(Path file) {
+        Stamp stamp;
+        synchronized (ready) {
+            stamp = accepted.get(file);
+        }
+        if (stamp == null) return false;
+        try {
+            return Files.size(file) != stamp.size()
+                    || Files.getLastModifiedTime(file).toMillis() != stamp.modified();
+        } catch (IOException e) {
+            // Remplacé en ce moment même
+            return true;
+        }
+    }
+
+    private void forget(Path file) {
+        pending.remove(file);
+        boolean removed;
+        synchronized (ready) {
+            accepted.remove(file);
+            removed = ready.remove(file) != null;
+        }
+        if (removed) changed();
+    }
+
+    // Un PDF entièrement écrit se termine par %%EOF (éventuellement suivi d'espaces)
+    private static boolean isComplete(Path file, long size) {
+        try (SeekableByteChannel ch = Files.newByteChannel(file, StandardOpenOption.READ)) {
+            int n = (int) Math.min(TAIL_BYTES, size);
+            ByteBuffer tail = ByteBuffer.allocate(n);
+            ch.position(size - n);
+            while (tail.hasRemaining() && ch.read(tail) > 0) ;
+            return new String(tail.array(), 0, tail.position(), StandardCharsets.ISO_8859_1).contains("%%EOF");
+        } catch (IOException e) {
+            // Encore verrouillé par l'application qui l'écrit
+            return false;
+        }
+    }
+
+    /* =========================
+       ANALYSE
+       ========================= */
+
+    // Texte et date extraits une fois pour toutes (cache partagé) : l'import n'aura plus qu'à déplacer
+    private void analyse() {
+        List<Item> batch = new ArrayList<>();
+        try {
+            while (!closed) {
+                Path file = batch.isEmpty() ? toAnalyse.take() : toAnalyse.poll();
+                if (file == null || batch.size() >= BATCH_SIZE) {
+                    publish(batch);
+                    batch = new ArrayList<>();
+                    if (file == null) continue;
+                }
+                Item item = analyse(file);
+                if (item != null) batch.add(item);
+            }
+        } catch (InterruptedException e) {
+            // Fermeture
+        }
+    }
+
+    private Item analyse(Path file) {
+        try {
+            String hash = ContentHasher.sha256(file);
+            LocalDateTime date = null;
+            try {
+                texts.load(file);
+                date = dates.extract(file);
+            } catch (IOException | RuntimeException e) {
+                // PDF illisible : proposé quand même, sans date (comme à l'import)
+                System.err.println("PDF illisible : " + file + " (" + e.getMessage() + ")");
+            }
+            return new Item(file, hash, date);
+        } catch (IOException e) {
+            // Supprimé avant l'analyse
+            synchronized (ready) {
+                accepted.remove(file);
+            }
+            return null;
+        }
+    }
+
+    private void publish(List<Item> batch) {
+        if (batch.isEmpty()) return;
+        synchronized (ready) {
+            for (Item item : batch) {
+                // Supprimé, importé ou réécrit pendant l'analyse
+                if (accepted.containsKey(item.file()) && Files.exists(item.file())) ready.put(item.file(), item);
+            }
+        }
+        changed();
+    }
+
+    private static boolean isPdf(Path path) {
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf");
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+}
@@ -0,0 +1,1033 @@
+package app.service;
+
+import app.model.DocumentFile;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Import des pièces jointes PDF d'une boîte mbox ou de fichiers .eml, en flux :
+ * les messages sont lus ligne à ligne (jamais chargés entiers en mémoire), chaque
+ * pièce jointe est décodée (base64, quoted-printable) directement dans un fichier
+ * de transit avec calcul de son empreinte, puis rangée par PdfImportService.
+ * La date du document est celle de l'en-tête Date: du message.
+ * La position atteinte (en octets) dans chaque source est notée dans
+ * .cache/mail-checkpoints.properties : un import annulé reprend au message suivant,
+ * et seuls les nouveaux messages d'une boîte qui grossit sont relus.
+ * Positions et empreintes ne sont enregistrées que par commit(), une fois les documents
+ * rattachés et sauvegardés par l'appelant : après un arrêt brutal, les messages sont relus
+ * au lieu de laisser des PDF rangés mais rattachés à aucune candidature.
+ */
+public class MailImportService {
+
+    // Texte du message conservé pour trouver la candidature (sujet, expéditeur, début du corps)
+    private static final int MAX_TEXT_BYTES = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 256 * 1024;
+    // Au-delà, une ligne est découpée (elle ne peut alors être ni séparateur ni frontière MIME)
+    private static final int MAX_LINE = 1 << 20;
+
+    private static final Pattern ENCODED_WORD =
+            Pattern.compile("=\\?([^?]+)\\?([BbQq])\\?([^?]*)\\?=(?:\\s+(?==\\?))?");
+    private static final Pattern DATE_COMMENT = Pattern.compile("\\([^)]*\\)");
+
+    // Message lu : de quoi choisir la candidature
+    public record Mail(String subject, String from, LocalDateTime date, String text) {
+    }
+
+    // Candidature de destination d'une pièce jointe (texte du mail d'abord, puis contenu du PDF)
+    @FunctionalInterface
+    public interface Router {
+        PdfBatchImportService.Target route(Mail mail, Path pdf);
+    }
+
+    // Pièce jointe non importée : doublon, candidature inconnue ou fichier qui n'est pas un PDF
+    public record Skipped(String mail, String attachment, String reason) {
+    }
+
+    /**
+     * Résultat : messages lus, documents importés (à rattacher par l'appelant),
+     * pièces jointes écartées et erreurs. Les sources déjà traitées entièrement sont ignorées.
+     * Empreintes des documents rangés et positions atteintes : enregistrées par commit().
+     */
+    public record Report(int messages, List<PdfBatchImportService.Imported> imported, List<Skipped> skipped,
+                         List<String> failures, boolean cancelled,
+                         List<DocumentHashIndex.Pending> hashes, Map<Path, Long> positions) {
+    }
+
+    // Pièce jointe décodée dans le dossier de transit
+    private record Staged(Path file, String hash, String name) {
+    }
+
+    private final DocumentHashIndex hashes;
+    private final Path checkpointFile;
+    private final Path stagingDir;
+    private final Properties checkpoints = new Properties();
+    private boolean checkpointsLoaded;
+
+    public MailImportService(DocumentHashIndex hashes) {
+        this(hashes, FileSystemService.getRoot().resolve(".cache").resolve("mail-checkpoints.properties"),
+                FileSystemService.getRoot().resolve(".cache").resolve("mail-staging"));
+    }
+
+    // Dossier de transit sur le même volume que les candidatures : le rangement n'est qu'un renommage
+    public MailImportService(DocumentHashIndex hashes, Path checkpointFile, Path stagingDir) {
+        this.hashes = hashes;
+        this.checkpointFile = checkpointFile;
+        this.stagingDir = stagingDir;
+    }
+
+    /* =========================
+       SÉLECTION
+       ========================= */
+
+    // Fichiers .eml (dossiers parcourus récursivement) et boîtes mbox (tout autre fichier)
+    public static List<Path> collectMailFiles(List<Path> selection) {
+        List<Path> files = new ArrayList<>();
+        for (Path path : selection) {
+            Path p = path.toAbsolutePath().normalize();
+            if (Files.isDirectory(p)) {
+                try (Stream<Path> walk = Files.walk(p)) {
+                    walk.filter(Files::isRegularFile).filter(MailImportService::isEml).sorted().forEach(files::add);
+                } catch (IOException e) {
+                    System.err.println("Dossier illisible : " + p + " (" + e.getMessage() + ")");
+                }
+            } else if (Files.isRegularFile(p)) {
+                files.add(p);
+            }
+        }
+        return files;
+    }
+
+    private static boolean isEml(Path path) {
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".eml");
+    }
+
+    /* =========================
+       REPRISE
+       ========================= */
+
+    // Position déjà traitée (0 : jamais lue)
+    public synchronized long checkpoint(Path source) {
+        loadCheckpoints();
+        return Long.parseLong(checkpoints.getProperty(key(source), "0"));
+    }
+
+    public synchronized void resetCheckpoint(Path source) {
+        loadCheckpoints();
+        checkpoints.remove(key(source));
+        saveCheckpoints();
+    }
+
+    /**
+     * À appeler une fois les documents du rapport rattachés et sauvegardés :
+     * ils entrent dans l'index des empreintes et les messages lus ne seront plus relus.
+     */
+    public synchronized void commit(Report report) {
+        if (hashes != null) report.hashes().forEach(hashes::add);
+        if (report.positions().isEmpty()) return;
+        loadCheckpoints();
+        report.positions().forEach((source, offset) -> checkpoints.setProperty(key(source), Long.toString(offset)));
+        saveCheckpoints();
+    }
+
+    private static String key(Path source) {
+        return source.toAbsolutePath().normalize().toString();
+    }
+
+    private void loadCheckpoints() {
+        if (checkpointsLoaded) return;
+        checkpointsLoaded = true;
+        if (!Files.exists(checkpointFile)) return;
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            checkpoints.load(in);
+        } catch (IOException e) {
+            System.err.println("Positions d'import des mails illisibles : " + e.getMessage());
+        }
+    }
+
+    private void saveCheckpoints() {
+        try {
+            Files.createDirectories(checkpointFile.getParent());
+            Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                checkpoints.store(out, "Import des mails : octets déjà traités par fichier");
+            }
+            Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Position d'import des mails non enregistrée : " + e.getMessage());
+        }
+    }
+
+    /* =========================
+       IMPORT
+       ========================= */
+
+    // Bloquant : à appeler hors du thread JavaFX
+    public Report importAll(List<Path> sources, Router router, PdfBatchImportService.Progress progress) {
+        Run run = new Run(router, progress);
+        long total = 0;
+        for (Path source : sources) {
+            try {
+                total += Math.max(0, Files.size(source) - checkpoint(source));
+            } catch (IOException ignored) {}
+        }
+        run.totalBytes = Math.max(1, total);
+
+        for (Path source : sources) {
+            if (run.cancelled()) break;
+            try {
+                importFile(source, run);
+            } catch (IOException | RuntimeException e) {
+                // Rapport partiel : ce qui est déjà rangé doit quand même être rattaché
+                run.failures.add(source.getFileName() + " : " + e.getMessage());
+            }
+        }
+        return new Report(run.messages, run.imported, run.skipped, run.failures, run.cancelled(),
+                run.hashes, run.positions);
+    }
+
+    // État d'un import : compteurs et résultats cumulés sur toutes les sources
+    private static final class Run {
+        final Router router;
+        final PdfBatchImportService.Progress progress;
+        final List<PdfBatchImportService.Imported> imported = new ArrayList<>();
+        final List<Skipped> skipped = new ArrayList<>();
+        final List<String> failures = new ArrayList<>();
+        final List<DocumentHashIndex.Pending> hashes = new ArrayList<>();
+        // Pièces jointes rangées pendant cet import (pas encore dans l'index) : empreinte -> fichier
+        final Map<String, String> stored = new HashMap<>();
+        final Map<Path, Long> positions = new LinkedHashMap<>();
+        long totalBytes;
+        long doneBytes;
+        int messages;
+
+        Run(Router router, PdfBatchImportService.Progress progress) {
+            this.router = router;
+            this.progress = progress;
+        }
+
+        boolean cancelled() {
+            return progress.isCancelled() || Thread.currentThread().isInterrupted();
+        }
+    }
+
+    private void importFile(Path source, Run run) throws IOException {
+        long size = Files.size(source);
+        long start = checkpoint(source);
+        boolean mbox = !isEml(source);
+        // Fichier raccourci ou remplacé depuis : tout est relu (les doublons seront écartés)
+        if (start > size || (!mbox && start > 0 && start < size)) start = 0;
+        if (start == size && size > 0) return;
+
+        try (SeekableByteChannel channel = Files.newByteChannel(source)) {
+            channel.position(start);
+            LineReader reader = new LineReader(Channels.newInputStream(channel), start);
+            if (mbox && start > 0 && !startsWithFromLine(reader)) {
+                // La position ne tombe plus sur un début de message : on repart du début
+                channel.position(0);
+                reader = new LineReader(Channels.newInputStream(channel), 0);
+                start = 0;
+            }
+
+            MessageSource in = new MessageSource(reader, mbox);
+            long counted = start;
+            // Après une pièce jointe en échec, la position reste avant ce message : « Reprendre » le relira
+            boolean failed = false;
+            while (in.nextMessage()) {
+                failed |= !importMessage(source, in, run);
+                run.messages++;
+                long offset = in.messageEnd();
+                run.doneBytes += offset - counted;
+                counted = offset;
+                run.progress.update((int) (run.doneBytes * 1000 / run.totalBytes), 1000,
+                        source.getFileName() + " : " + run.messages + " message(s), "
+                                + run.imported.size() + " PDF importé(s)");
+
+                if (!failed) run.positions.put(source, offset);
+                if (run.cancelled()) return;
+            }
+            if (!failed) run.positions.put(source, reader.position);
+        }
+    }
+
+    private static boolean startsWithFromLine(LineReader reader) throws IOException {
+        reader.mark();
+        boolean from = reader.readLine() && reader.startsWith("From ");
+        reader.reset();
+        return from;
+    }
+
+    /* =========================
+       MESSAGE
+       ========================= */
+
+    // Faux si une pièce jointe n'a pas pu être rangée
+    private boolean importMessage(Path source, MessageSource in, Run run) throws IOException {
+        MessageState msg = new MessageState();
+        try {
+            parseEntity(in, new ArrayDeque<>(), msg, true);
+            in.skipRest();
+        } catch (IOException e) {
+            msg.discard();
+            throw e;
+        }
+        if (msg.staged.isEmpty() && msg.notPdf.isEmpty()) return true;
+
+        String label = (msg.subject != null && !msg.subject.isBlank() ? msg.subject : "(sans objet)")
+                + " — " + source.getFileName();
+        msg.notPdf.forEach(name -> run.skipped.add(new Skipped(label, name, "pas un PDF")));
+        Mail mail = new Mail(msg.subject, msg.from, msg.date, msg.text());
+        boolean complete = true;
+        for (Staged staged : msg.staged) {
+            try {
+                importAttachment(mail, label, staged, run);
+            } catch (IOException | RuntimeException e) {
+                run.failures.add(label + " / " + staged.name() + " : " + e.getMessage());
+                complete = false;
+            } finally {
+                deleteStaging(staged.file());
+            }
+        }
+        return complete;
+    }
+
+    private void importAttachment(Mail mail, String label, Staged staged, Run run) throws IOException {
+        PdfBatchImportService.Target target = run.router.route(mail, staged.file());
+        if (target == null) {
+            run.skipped.add(new Skipped(label, staged.name(), "aucune candidature reconnue"));
+            return;
+        }
+        // Même pièce jointe déjà rangée (mail réimporté, PDF importé à la main...) : pas de second exemplaire
+        String storedNow = run.stored.get(staged.hash());
+        DocumentHashIndex.Location known = hashes != null ? hashes.find(staged.hash()) : null;
+        if (storedNow != null || (known != null && hashes.resolve(known) != null)) {
+            String existing = storedNow != null ? storedNow : known.fileName();
+            run.skipped.add(new Skipped(label, staged.name(), "déjà stocké (" + existing + ")"));
+            return;
+        }
+
+        DocumentFile doc = PdfImportService.importer(staged.file(), target.dossier(), mail.date(), staged.hash());
+        run.imported.add(new PdfBatchImportService.Imported(staged.file(), target.candidatureId(), doc));
+        run.stored.put(staged.hash(), doc.getFichier().getFileName().toString());
+        run.hashes.add(DocumentHashIndex.pending(target.candidatureId(), doc.getFichier(), staged.hash()));
+    }
+
+    private void deleteStaging(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(file.getParent());
+        } catch (IOException e) {
+            System.err.println("Fichier de transit non supprimé : " + file + " (" + e.getMessage() + ")");
+        }
+    }
+
+    // En-têtes utiles et pièces jointes d'un message en cours de lecture
+    private static final class MessageState {
+        String subject;
+        String from;
+        LocalDateTime date;
+        final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        Charset textCharset = StandardCharsets.UTF_8;
+        final List<Staged> staged = new ArrayList<>();
+        // Pièces jointes nommées .pdf dont le contenu n'en est pas un
+        final List<String> notPdf = new ArrayList<>();
+
+        String text() {
+            String body = text.toString(textCharset);
+            return (subject != null ? subject : "") + "\n" + (from != null ? from : "") + "\n" + body;
+        }
+
+        void discard() {
+            for (Staged s : staged) {
+                try {
+                    Files.deleteIfExists(s.file());
+                    Files.deleteIfExists(s.file().getParent());
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    /* =========================
+       MIME
+       ========================= */
+
+    // Frontière rencontrée : suite du multipart (close = false) ou sa fin ; null en fin de message
+    private record Delimiter(String boundary, boolean close) {
+    }
+
+    /**
+     * Lit une entité (en-têtes puis corps) jusqu'à la frontière MIME qui la termine.
+     * Les multiparts imbriqués empilent leur frontière ; les corps sont décodés au fil des lignes.
+     */
+    private Delimiter parseEntity(MessageSource in, Deque<String> boundaries, MessageState msg, boolean top)
+            throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        Delimiter end = readHeaders(in, boundaries, headers);
+        if (end != null) return end;
+
+        if (top) {
+            msg.subject = decodeWords(headers.get("subject"));
+            msg.from = decodeWords(headers.get("from"));
+            msg.date = parseDate(headers.get("date"));
+        }
+
+        Map<String, String> type = parameters(headers.getOrDefault("content-type", "text/plain"));
+        Map<String, String> disposition = parameters(headers.getOrDefault("content-disposition", ""));
+        String mimeType = type.get("").toLowerCase(Locale.ROOT);
+        String encoding = headers.getOrDefault("content-transfer-encoding", "7bit").trim().toLowerCase(Locale.ROOT);
+
+        String boundary = type.get("boundary");
+        if (mimeType.startsWith("multipart/") && boundary != null && !boundary.isEmpty()) {
+            return parseMultipart(in, boundaries, boundary, msg);
+        }
+
+        String fileName = decodeWords(disposition.getOrDefault("filename", type.get("name")));
+        boolean pdf = mimeType.equals("application/pdf")
+                || (fileName != null && fileName.toLowerCase(Locale.ROOT).endsWith(".pdf"));
+        boolean attachment = "attachment".equalsIgnoreCase(disposition.get(""));
+
+        if (pdf) return stageAttachment(in, boundaries, encoding, fileName, msg);
+        if (!attachment && (mimeType.equals("text/plain") || mimeType.equals("text/html"))
+                && msg.text.size() < MAX_TEXT_BYTES) {
+            msg.textCharset = charset(type.get("charset"));
+            BodySink sink = BodySink.of(encoding, new LimitedOutput(msg.text, MAX_TEXT_BYTES));
+            Delimiter d = copyBody(in, boundaries, sink);
+            sink.finish();
+            msg.text.write('\n');
+            return d;
+        }
+        return copyBody(in, boundaries, null);
+    }
+
+    private Delimiter parseMultipart(MessageSource in, Deque<String> boundaries, String boundary, MessageState msg)
+            throws IOException {
+        boundaries.push(boundary);
+        try {
+            // Préambule jusqu'à la première frontière
+            Delimiter d = copyBody(in, boundaries, null);
+            while (d != null && d.boundary().equals(boundary) && !d.close()) {
+                d = parseEntity(in, boundaries, msg, false);
+            }
+            if (d == null || !d.boundary().equals(boundary)) return d;
+        } finally {
+            boundaries.pop();
+        }
+        // Épilogue jusqu'à la frontière du multipart parent
+        return copyBody(in, boundaries, null);
+    }
+
+    private Delimiter readHeaders(MessageSource in, Deque<String> boundaries, Map<String, String> headers)
+            throws IOException {
+        StringBuilder current = null;
+        int bytes = 0;
+        while (in.readLine()) {
+            Delimiter d = delimiter(in.reader, boundaries);
+            if (d != null) return d;
+            if (in.reader.length == 0) break;
+            String line = headerText(in.reader);
+            bytes += in.reader.length;
+            if (bytes > MAX_HEADER_BYTES) continue;
+            if ((line.charAt(0) == ' ' || line.charAt(0) == '\t') && current != null) {
+                // Ligne repliée : suite de l'en-tête précédent
+                current.append(' ').append(line.trim());
+                continue;
+            }
+            if (current != null) putHeader(headers, current);
+            current = new StringBuilder(line);
+        }
+        if (current != null) putHeader(headers, current);
+        return null;
+    }
+
+    private static void putHeader(Map<String, String> headers, StringBuilder header) {
+        int colon = header.indexOf(":");
+        if (colon <= 0) return;
+        headers.putIfAbsent(header.substring(0, colon).trim().toLowerCase(Locale.ROOT), header.substring(colon + 1).trim());
+    }
+
+    // Corps lu jusqu'à la prochaine frontière connue (ou la fin du message), décodé dans sink si présent
+    private Delimiter copyBody(MessageSource in, Deque<String> boundaries, BodySink sink) throws IOException {
+        while (in.readLine()) {
+            Delimiter d = delimiter(in.reader, boundaries);
+            if (d != null) return d;
+            if (sink != null) sink.line(in.reader);
+        }
+        return null;
+    }
+
+    private Delimiter stageAttachment(MessageSource in, Deque<String> boundaries, String encoding, String fileName,
+                                      MessageState msg) throws IOException {
+        Files.createDirectories(stagingDir);
+        Path dir = Files.createTempDirectory(stagingDir, "mail");
+        Path file;
+        try {
+            file = dir.resolve(safeFileName(fileName));
+        } catch (InvalidPathException e) {
+            // Nom non représentable sur ce système de fichiers : accents retirés
+            file = dir.resolve(safeFileName(Normalizer.normalize(fileName, Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}+", "").replaceAll("[^\\x20-\\x7E]", "_")));
+        }
+        MessageDigest digest = sha256();
+
+        Delimiter d;
+        try (OutputStream out = new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 1 << 16), digest)) {
+            BodySink sink = BodySink.of(encoding, out);
+            d = copyBody(in, boundaries, sink);
+            sink.finish();
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+            throw e;
+        }
+
+        if (!isPdf(file)) {
+            msg.notPdf.add(file.getFileName().toString());
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+            return d;
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        ContentHasher.remember(file, hash);
+        msg.staged.add(new Staged(file, hash, file.getFileName().toString()));
+        return d;
+    }
+
+    private static boolean isPdf(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] head = in.readNBytes(1024);
+            return new String(head, StandardCharsets.ISO_8859_1).contains("%PDF-");
+        }
+    }
+
+    private static Delimiter delimiter(LineReader line, Deque<String> boundaries) {
+        if (boundaries.isEmpty() || line.continuation || line.length < 3
+                || line.buf[0] != '-' || line.buf[1] != '-') return null;
+        int end = line.length;
+        while (end > 2 && (line.buf[end - 1] == ' ' || line.buf[end - 1] == '\t')) end--;
+        String text = new String(line.buf, 2, end - 2, StandardCharsets.ISO_8859_1);
+        for (String boundary : boundaries) {
+            if (text.equals(boundary)) return new Delimiter(boundary, false);
+            if (text.equals(boundary + "--")) return new Delimiter(boundary, true);
+        }
+        return null;
+    }
+
+    /* =========================
+       DÉCODAGE DES CORPS
+       ========================= */
+
+    // Décodage ligne à ligne d'un corps selon son Content-Transfer-Encoding
+    private abstract static class BodySink {
+        final OutputStream out;
+
+        BodySink(OutputStream out) {
+            this.out = out;
+        }
+
+        abstract void line(LineReader line) throws IOException;
+
+        void finish() throws IOException {
+            out.flush();
+        }
+
+        static BodySink of(String encoding, OutputStream out) {
+            return switch (encoding) {
+                case "base64" -> new Base64Sink(out);
+                case "quoted-printable" -> new QuotedPrintableSink(out);
+                default -> new RawSink(out);
+            };
+        }
+    }
+
+    private static final class Base64Sink extends BodySink {
+        private final byte[] carry = new byte[4];
+        private int carried;
+        private byte[] chunk = new byte[1024];
+
+        Base64Sink(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        void line(LineReader line) throws IOException {
+            if (chunk.length < line.length + 4) chunk = new byte[line.length + 4];
+            int n = 0;
+            for (int i = 0; i < carried; i++) chunk[n++] = carry[i];
+            for (int i = 0; i < line.length; i++) {
+                byte b = line.buf[i];
+                if (b == '=' || isBase64(b)) chunk[n++] = b;
+            }
+            // Groupes complets décodés, le reste attend la ligne suivante
+            int whole = n - n % 4;
+            carried = n - whole;
+            System.arraycopy(chunk, whole, carry, 0, carried);
+            if (whole > 0) decode(chunk, whole);
+        }
+
+        @Override
+        void finish() throws IOException {
+            // Dernier groupe incomplet (remplissage absent) : accepté par le décodeur
+            if (carried > 1) decode(carry, carried);
+            carried = 0;
+            super.finish();
+        }
+
+        private void decode(byte[] data, int length) throws IOException {
+            byte[] decoded = new byte[(length + 3) / 4 * 3];
+            try {
+                int n = Base64.getDecoder().decode(Arrays.copyOf(data, length), decoded);
+                out.write(decoded, 0, n);
+            } catch (IllegalArgumentException e) {
+                // Remplissage au milieu du corps (parties concaténées) : décodage tolérant
+                out.write(Base64.getMimeDecoder().decode(new String(data, 0, length, StandardCharsets.ISO_8859_1)
+                        .replace("=", "")));
+            }
+        }
+
+        private static boolean isBase64(byte b) {
+            return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '+' || b == '/';
+        }
+    }
+
+    private static final class QuotedPrintableSink extends BodySink {
+        private boolean pendingBreak;
+
+        QuotedPrintableSink(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        void line(LineReader line) throws IOException {
+            if (pendingBreak) out.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            int end = line.length;
+            while (end > 0 && (line.buf[end - 1] == ' ' || line.buf[end - 1] == '\t')) end--;
+            boolean soft = end > 0 && line.buf[end - 1] == '=';
+            if (soft) end--;
+            for (int i = 0; i < end; i++) {
+                byte b = line.buf[i];
+                if (b == '=' && i + 2 < end) {
+                    int hi = Character.digit(line.buf[i + 1], 16);
+                    int lo = Character.digit(line.buf[i + 2], 16);
+                    if (hi >= 0 && lo >= 0) {
+                        out.write((hi << 4) | lo);
+                        i += 2;
+                        continue;
+                    }
+                }
+                out.write(b);
+            }
+            pendingBreak = !soft;
+        }
+    }
+
+    // 7bit, 8bit, binary : octets recopiés tels quels ; la fin de ligne avant une frontière lui appartient
+    private static final class RawSink extends BodySink {
+        private final byte[] terminator = new byte[2];
+        private int pending;
+
+        RawSink(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        void line(LineReader line) throws IOException {
+            out.write(terminator, 0, pending);
+            out.write(line.buf, 0, line.length);
+            pending = line.terminator;
+            if (pending == 2) {
+                terminator[0] = '\r';
+                terminator[1] = '\n';
+            } else if (pending == 1) {
+                terminator[0] = '\n';
+            }
+        }
+    }
+
+    // Texte conservé pour le classement : le surplus est ignoré
+    private static final class LimitedOutput extends OutputStream {
+        private final ByteArrayOutputStream target;
+        private final int limit;
+
+        LimitedOutput(ByteArrayOutputStream target, int limit) {
+            this.target = target;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) {
+            if (target.size() < limit) target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            int room = limit - target.size();
+            if (room > 0) target.write(b, off, Math.min(room, len));
+        }
+    }
+
+    /* =========================
+       LECTURE EN FLUX
+       ========================= */
+
+    /**
+     * Lignes d'un fichier lues dans un tampon fixe : position en octets de chaque début de ligne,
+     * fin de ligne (LF ou CRLF) retirée mais mémorisée.
+     */
+    private static final class LineReader {
+        private final InputStream in;
+        private final byte[] chunk = new byte[1 << 16];
+        private int pos;
+        private int limit;
+        private boolean eof;
+
+        byte[] buf = new byte[256];
+        int length;
+        int terminator;
+        // Ligne découpée (trop longue) : suite d'une ligne précédente
+        boolean continuation;
+        private boolean truncated;
+        long position;
+        long lineStart;
+
+        private boolean marked;
+        private boolean replay;
+
+        LineReader(InputStream in, long position) {
+            this.in = in;
+            this.position = position;
+        }
+
+        boolean readLine() throws IOException {
+            if (replay) {
+                replay = false;
+                return true;
+            }
+            continuation = truncated;
+            truncated = false;
+            lineStart = position;
+            length = 0;
+            terminator = 0;
+            while (true) {
+                if (pos == limit) {
+                    if (eof) return length > 0;
+                    limit = in.read(chunk, 0, chunk.length);
+                    pos = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        eof = true;
+                        return length > 0;
+                    }
+                }
+                byte b = chunk[pos++];
+                position++;
+                if (b == '\n') {
+                    terminator = 1;
+                    if (length > 0 && buf[length - 1] == '\r') {
+                        length--;
+                        terminator = 2;
+                    }
+                    return true;
+                }
+                if (length == buf.length) {
+                    if (length >= MAX_LINE) {
+                        pos--;
+                        position--;
+                        truncated = true;
+                        return true;
+                    }
+                    buf = Arrays.copyOf(buf, length * 2);
+                }
+                buf[length++] = b;
+            }
+        }
+
+        // Une seule ligne d'avance : relue telle quelle après reset()
+        void mark() {
+            marked = true;
+        }
+
+        void reset() {
+            if (marked) replay = true;
+            marked = false;
+        }
+
+        boolean startsWith(String prefix) {
+            if (length < prefix.length()) return false;
+            for (int i = 0; i < prefix.length(); i++) {
+                if (buf[i] != prefix.charAt(i)) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Lignes d'un message : dans une boîte mbox, le message s'arrête à la ligne « From »
+     * suivante (précédée d'une ligne vide) ; les lignes « >From » échappées sont restituées.
+     */
+    private static final class MessageSource {
+        final LineReader reader;
+        private final boolean mbox;
+        private boolean started;
+        private boolean atSeparator;
+        private boolean previousBlank = true;
+        private boolean finished;
+        private long messageEnd;
+
+        MessageSource(LineReader reader, boolean mbox) {
+            this.reader = reader;
+            this.mbox = mbox;
+        }
+
+        // Passe au message suivant ; faux en fin de fichier
+        boolean nextMessage() throws IOException {
+            if (finished) return false;
+            if (!mbox) {
+                if (started) return false;
+                started = true;
+                return true;
+            }
+            if (!atSeparator) {
+                // Premier message : ligne « From » d'ouverture (ou texte avant, ignoré)
+                while (reader.readLine()) {
+                    if (reader.startsWith("From ") && !reader.continuation) {
+                        atSeparator = true;
+                        break;
+                    }
+                }
+                if (!atSeparator) {
+                    finished = true;
+                    return false;
+                }
+            }
+            atSeparator = false;
+            previousBlank = false;
+            started = true;
+            return true;
+        }
+
+        boolean readLine() throws IOException {
+            if (atSeparator || finished) return false;
+            if (!reader.readLine()) {
+                finished = true;
+                messageEnd = reader.position;
+                return false;
+            }
+            if (mbox && !reader.continuation && previousBlank && reader.startsWith("From ")) {
+                atSeparator = true;
+                messageEnd = reader.lineStart;
+                return false;
+            }
+            previousBlank = reader.length == 0;
+            if (mbox && !reader.continuation) unescapeFrom();
+            return true;
+        }
+
+        // mboxrd : « >From » (et « >>From »...) perd un « > »
+        private void unescapeFrom() {
+            int i = 0;
+            while (i < reader.length && reader.buf[i] == '>') i++;
+            if (i == 0 || reader.length - i < 5) return;
+            for (int k = 0; k < 5; k++) {
+                if (reader.buf[i + k] != "From ".charAt(k)) return;
+            }
+            System.arraycopy(reader.buf, 1, reader.buf, 0, reader.length - 1);
+            reader.length--;
+        }
+
+        // Fin du message (épilogue, partie non lue) jusqu'au séparateur suivant
+        void skipRest() throws IOException {
+            while (readLine()) ;
+            if (!atSeparator) messageEnd = reader.position;
+        }
+
+        long messageEnd() {
+            return messageEnd;
+        }
+    }
+
+    /* =========================
+       EN-TÊTES
+       ========================= */
+
+    // En-tête en UTF-8 (RFC 6532) si valide, Latin-1 sinon
+    private static String headerText(LineReader line) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(line.buf, 0, line.length)).toString();
+        } catch (CharacterCodingException e) {
+            return new String(line.buf, 0, line.length, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    // "type/sous-type; nom=valeur; nom="valeur"" : la valeur principale est rangée sous la clé ""
+    static Map<String, String> parameters(String header) {
+        Map<String, String> params = new HashMap<>();
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < header.length(); i++) {
+            char c = header.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == '\\' && quoted && i + 1 < header.length()) current.append(header.charAt(++i));
+            else if (c == ';' && !quoted) {
+                parts.add(current.toString());
+                current.setLength(0);
+            } else current.append(c);
+        }
+        parts.add(current.toString());
+
+        params.put("", parts.get(0).trim());
+        for (int i = 1; i < parts.size(); i++) {
+            String part = parts.get(i);
+            int eq = part.indexOf('=');
+            if (eq <= 0) continue;
+            String name = part.substring(0, eq).trim().toLowerCase(Locale.ROOT);
+            String value = part.substring(eq + 1).trim();
+            // RFC 2231 : filename*=UTF-8''rapport%20final.pdf
+            if (name.endsWith("*")) {
+                name = name.substring(0, name.length() - 1);
+                value = decodeExtended(value);
+                params.put(name, value);
+            } else {
+                params.putIfAbsent(name, value);
+            }
+        }
+        return params;
+    }
+
+    private static String decodeExtended(String value) {
+        int first = value.indexOf('\'');
+        int second = first >= 0 ? value.indexOf('\'', first + 1) : -1;
+        if (second < 0) return value;
+        Charset charset = charset(value.substring(0, first));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        String encoded = value.substring(second + 1);
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c == '%' && i + 2 < encoded.length()) {
+                int hi = Character.digit(encoded.charAt(i + 1), 16);
+                int lo = Character.digit(encoded.charAt(i + 2), 16);
+                if (hi >= 0 && lo >= 0) {
+                    bytes.write((hi << 4) | lo);
+                    i += 2;
+                    continue;
+                }
+            }
+            bytes.write(c);
+        }
+        return bytes.toString(charset);
+    }
+
+    // Mots encodés RFC 2047 : =?UTF-8?B?...?= et =?ISO-8859-1?Q?...?=
+    static String decodeWords(String value) {
+        if (value == null || !value.contains("=?")) return value;
+        Matcher m = ENCODED_WORD.matcher(value);
+        StringBuilder sb = new StringBuilder();
+        while (m.find()) {
+            Charset charset = charset(m.group(1));
+            String text = m.group(3);
+            byte[] bytes;
+            if (m.group(2).equalsIgnoreCase("B")) {
+                try {
+                    bytes = Base64.getMimeDecoder().decode(text);
+                } catch (IllegalArgumentException e) {
+                    bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+                }
+            } else {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c == '_') out.write(' ');
+                    else if (c == '=' && i + 2 < text.length()
+                            && Character.digit(text.charAt(i + 1), 16) >= 0 && Character.digit(text.charAt(i + 2), 16) >= 0) {
+                        out.write(Integer.parseInt(text.substring(i + 1, i + 3), 16));
+                        i += 2;
+                    } else out.write(c);
+                }
+                bytes = out.toByteArray();
+            }
+            m.appendReplacement(sb, Matcher.quoteReplacement(new String(bytes, charset)));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    // Date: Tue, 12 Mar 2024 14:05:33 +0100 (CET), ramenée au fuseau local
+    static LocalDateTime parseDate(String value) {
+        if (value == null || value.isBlank()) return null;
+        String cleaned = DATE_COMMENT.matcher(value).replaceAll(" ").trim().replaceAll("\\s+", " ");
+        try {
+            return ZonedDateTime.parse(cleaned, DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        } catch (DateTimeException e) {
+            // Formes approximatives (secondes absentes, zone en lettres...) : reconnaissance souple
+            return DateExtractionService.findDate("Date: " + cleaned, true);
+        }
+    }
+
+    private static Charset charset(String name) {
+        if (name == null || name.isBlank()) return StandardCharsets.UTF_8;
+        try {
+            return Charset.forName(name.trim().replace("\"", ""));
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.ISO_8859_1;
+        }
+    }
+
+    private static String safeFileName(String name) {
+        String base = name == null || name.isBlank() ? "piece-jointe.pdf" : name;
+        base = base.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        if (base.isEmpty() || base.startsWith(".")) base = "piece-jointe" + base;
+        if (!base.toLowerCase(Locale.ROOT).endsWith(".pdf")) base += ".pdf";
+        if (base.length() > 120) base = base.substring(0, 116) + ".pdf";
+        return base;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package app.service;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Images de pages sans copie ni allocation à chaque rendu : PDFBox dessine directement
+ * dans un BufferedImage ARGB prémultiplié dont le tableau de pixels est partagé, via
+ * un PixelBuffer, avec l'image JavaFX (plus de SwingFXUtils.toFXImage).
+ * Les images sorties du cache de pages reviennent ici et servent au rendu suivant
+ * de mêmes dimensions (les pages d'un document ont en général toutes la même taille).
+ */
+public class PageImagePool {
+
+    private static class Buffer {
+        final BufferedImage canvas;
+        final PixelBuffer<IntBuffer> pixels;
+        // Nombre d'utilisations : permet de savoir si l'image a été réattribuée entre-temps
+        long generation;
+        boolean free;
+        // Pixels réécrits : la texture JavaFX doit être rafraîchie avant affichage
+        boolean dirty;
+
+        Buffer(int width, int height) {
+            canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            int[] data = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+            pixels = new PixelBuffer<>(width, height, IntBuffer.wrap(data), PixelFormat.getIntArgbPreInstance());
+        }
+
+        long bytes() {
+            return (long) canvas.getWidth() * canvas.getHeight() * 4;
+        }
+    }
+
+    private final long maxFreeBytes;
+    // Faible sur l'image : une image jamais rendue au pool est simplement collectée
+    private final Map<WritableImage, Buffer> buffers = new WeakHashMap<>();
+    private final Map<Long, ArrayDeque<WritableImage>> free = new HashMap<>();
+    private long freeBytes;
+
+    private long allocations;
+    private long allocatedBytes;
+    private long reuses;
+    private long releases;
+    private long discards;
+
+    public PageImagePool(long maxFreeBytes) {
+        this.maxFreeBytes = maxFreeBytes;
+    }
+
+    /* =========================
+       RENDU
+       ========================= */
+
+    // Même taille en pixels que PDFRenderer.renderImageWithDPI
+    public WritableImage render(PDFRenderer renderer, PDPage pdPage, int page, float dpi) throws IOException {
+        float scale = dpi / 72f;
+        PDRectangle box = pdPage.getCropBox();
+        int width = (int) Math.max(Math.floor(box.getWidth() * scale), 1);
+        int height = (int) Math.max(Math.floor(box.getHeight() * scale), 1);
+        if (pdPage.getRotation() % 180 != 0) {
+            int tmp = width;
+            width = height;
+            height = tmp;
+        }
+
+        WritableImage image = acquire(width, height);
+        Buffer buffer;
+        synchronized (this) {
+            buffer = buffers.get(image);
+        }
+        Graphics2D g = buffer.canvas.createGraphics();
+        boolean done = false;
+        try {
+            g.setBackground(Color.WHITE);
+            g.clearRect(0, 0, width, height);
+            renderer.renderPageToGraphics(page, g, scale);
+            done = true;
+        } finally {
+            g.dispose();
+            // Rendu annulé ou en erreur : le tampon repart aussitôt dans le pool
+            if (!done) release(image);
+        }
+        return image;
+    }
+
+    /* =========================
+       POOL
+       ========================= */
+
+    private synchronized WritableImage acquire(int width, int height) {
+        ArrayDeque<WritableImage> queue = free.get(sizeKey(width, height));
+        WritableImage image = queue != null ? queue.poll() : null;
+        if (image != null) {
+            Buffer buffer = buffers.get(image);
+            buffer.free = false;
+            buffer.dirty = true;
+            buffer.generation++;
+            freeBytes -= buffer.bytes();
+            reuses++;
+            return image;
+        }
+
+        Buffer buffer = new Buffer(width, height);
+        buffer.dirty = true;
+        image = new WritableImage(buffer.pixels);
+        buffers.put(image, buffer);
+        allocations++;
+        allocatedBytes += buffer.bytes();
+        return image;
+    }
+
+    // Image sortie du cache et plus affichée ; les images étrangères au pool sont ignorées
+    public synchronized void release(Image image) {
+        Buffer buffer = image instanceof WritableImage w ? buffers.get(w) : null;
+        if (buffer == null || buffer.free) return;
+        if (freeBytes + buffer.bytes() > maxFreeBytes) {
+            buffers.remove(image);
+            discards++;
+            return;
+        }
+        buffer.free = true;
+        freeBytes += buffer.bytes();
+        free.computeIfAbsent(sizeKey((int) image.getWidth(), (int) image.getHeight()), k -> new ArrayDeque<>())
+                .add((WritableImage) image);
+        releases++;
+    }
+
+    // Génération courante de l'image, à relever juste après le rendu
+    public synchronized long generation(Image image) {
+        Buffer buffer = image instanceof WritableImage w ? buffers.get(w) : null;
+        return buffer != null ? buffer.generation : 0;
+    }
+
+    /**
+     * À appeler sur le thread JavaFX avant d'afficher une image rendue en arrière-plan.
+     * Faux si l'image a été réattribuée à un autre rendu depuis (il faut alors la refaire) ;
+     * rendue au pool mais pas encore réutilisée, elle en est retirée.
+     */
+    public synchronized boolean claim(Image image, long generation) {
+        Buffer buffer = image instanceof WritableImage w ? buffers.get(w) : null;
+        if (buffer == null) return true;
+        if (buffer.generation != generation) return false;
+        if (buffer.free) {
+            free.get(sizeKey((int) image.getWidth(), (int) image.getHeight())).remove(image);
+            buffer.free = false;
+            freeBytes -= buffer.bytes();
+        }
+        if (buffer.dirty) {
+            buffer.pixels.updateBuffer(b -> null);
+            buffer.dirty = false;
+        }
+        return true;
+    }
+
+    public synchronized void clear() {
+        free.clear();
+        buffers.clear();
+        freeBytes = 0;
+    }
+
+    private static long sizeKey(int width, int height) {
+        return ((long) width << 32) | height;
+    }
+
+    /* =========================
+       STATISTIQUES
+       ========================= */
+    public synchronized long getAllocationCount() {
+        return allocations;
+    }
+
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public synchronized long getReuseCount() {
+        return reuses;
+    }
+
+    public synchronized long getReleaseCount() {
+        return releases;
+    }
+
+    public synchronized long getDiscardCount() {
+        return discards;
+    }
+
+    public synchronized long getFreeBytes() {
+        return freeBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PageImagePool[allocations=" + allocations + " (" + (allocatedBytes >> 20) + " Mo), reuses=" + reuses
+                + ", releases=" + releases + ", discards=" + discards + ", free=" + (freeBytes >> 20) + " Mo]";
+    }
+}
@@ -0,0 +1,250 @@
+package app.service;
+
+import app.model.DocumentFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Import de plusieurs PDF dans une candidature, en trois étapes :
+ * 1. empreinte SHA-256 et détection de la date (stratégie configurable, voir DateExtractionService),
+ *    en parallèle (nombre de threads borné) ;
+ * 2. déplacement des fichiers un par un via PdfImportService, dans l'ordre de la sélection,
+ *    dès que l'analyse du fichier suivant est prête ; un contenu déjà stocké (DocumentHashIndex)
+ *    est signalé avant tout déplacement ;
+ * 3. rapport unique : l'appelant ajoute les documents, sauvegarde et rafraîchit une seule fois.
+ * Chaque fichier peut aussi être dirigé vers sa propre candidature (routeur appelé pendant l'analyse,
+ * voir CandidatureMatcher) : un fichier sans destination reste en place.
+ */
+public class PdfBatchImportService {
+
+    // Suivi de l'avancement (appelé depuis les threads d'import)
+    public interface Progress {
+        void update(int done, int total, String message);
+
+        default boolean isCancelled() {
+            return false;
+        }
+
+        // Contenu déjà stocké dans une autre candidature : que faire de la source ?
+        default DuplicateAction onDuplicate(Path source, Path existing) {
+            return DuplicateAction.SKIP;
+        }
+    }
+
+    public enum DuplicateAction {
+        // Source laissée en place, rien n'est importé
+        SKIP,
+        // Lien physique vers le fichier existant (aucune copie supplémentaire)
+        LINK,
+        // Import normal : le contenu est stocké une seconde fois
+        IMPORT
+    }
+
+    // Candidature de destination d'un fichier
+    public record Target(String candidatureId, Path dossier) {
+    }
+
+    public record Imported(Path source, String candidatureId, DocumentFile document) {
+    }
+
+    public record Failure(Path source, String message) {
+    }
+
+    // Source identique au fichier existant, et suite donnée
+    public record Duplicate(Path source, Path existing, DuplicateAction action) {
+    }
+
+    /**
+     * Résultat d'un lot : documents importés,
+     * fichiers sans date détectée (date du jour utilisée), doublons, fichiers sans candidature
+     * reconnue (laissés en place) et échecs.
+     */
+    public record Report(List<Imported> imported, List<Path> withoutDate, List<Duplicate> duplicates,
+                         List<Path> unmatched, List<Failure> failures, boolean cancelled) {
+    }
+
+    private record Analysis(String hash, LocalDateTime date, Target target) {
+    }
+
+    private final int parallelism;
+    private final DateExtractionService dates;
+    // Null : pas de détection des doublons
+    private final DocumentHashIndex hashes;
+
+    public PdfBatchImportService(DocumentHashIndex hashes) {
+        this(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)),
+                DateExtractionService.getDefault(), hashes);
+    }
+
+    public PdfBatchImportService(int parallelism, DateExtractionService dates, DocumentHashIndex hashes) {
+        this.parallelism = parallelism;
+        this.dates = dates;
+        this.hashes = hashes;
+    }
+
+    /* =========================
+       SÉLECTION
+       ========================= */
+
+    // Fichiers et dossiers (parcourus récursivement) réduits aux seuls PDF, sans doublon
+    public static List<Path> collectPdfs(List<File> selection) {
+        Set<Path> pdfs = new LinkedHashSet<>();
+        for (File f : selection) {
+            Path path = f.toPath().toAbsolutePath().normalize();
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(Files::isRegularFile).filter(PdfBatchImportService::isPdf).sorted().forEach(pdfs::add);
+                } catch (IOException e) {
+                    System.err.println("Dossier illisible : " + path + " (" + e.getMessage() + ")");
+                }
+            } else if (isPdf(path)) {
+                pdfs.add(path);
+            }
+        }
+        return new ArrayList<>(pdfs);
+    }
+
+    private static boolean isPdf(Path path) {
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf");
+    }
+
+    /* =========================
+       IMPORT
+       ========================= */
+
+    // Bloquant : à appeler hors du thread JavaFX
+    public Report importAll(List<Path> sources, String candidatureId, Path dossier, Progress progress) {
+        Target target = new Target(candidatureId, dossier);
+        return importAll(sources, source -> target, progress);
+    }
+
+    // Destination choisie fichier par fichier ; router renvoie null si aucune candidature ne convient
+    public Report importAll(List<Path> sources, Function<Path, Target> router, Progress progress) {
+        int total = sources.size();
+        // Deux unités par fichier : analyse puis déplacement
+        AtomicInteger done = new AtomicInteger();
+        List<Imported> imported = new ArrayList<>();
+        List<Path> withoutDate = new ArrayList<>();
+        List<Duplicate> duplicates = new ArrayList<>();
+        List<Path> unmatched = new ArrayList<>();
+        List<Failure> failures = new ArrayList<>();
+
+        ExecutorService analysers = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, total)), r -> {
+            Thread t = new Thread(r, "pdf-import-analyse");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            // 1. Analyses lancées toutes ensemble, exécutées au plus "parallelism" à la fois
+            List<Future<Analysis>> analyses = new ArrayList<>(total);
+            for (Path source : sources) {
+                analyses.add(analysers.submit(() -> {
+                    Analysis analysis = analyse(source, router);
+                    progress.update(done.incrementAndGet(), total * 2, "Analyse de " + source.getFileName());
+                    return analysis;
+                }));
+            }
+
+            // 2. Déplacements séquentiels, dans l'ordre de la sélection
+            for (int i = 0; i < total; i++) {
+                if (progress.isCancelled() || Thread.currentThread().isInterrupted()) {
+                    return new Report(imported, withoutDate, duplicates, unmatched, failures, true);
+                }
+                Path source = sources.get(i);
+                Analysis analysis;
+                try {
+                    analysis = analyses.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return new Report(imported, withoutDate, duplicates, unmatched, failures, true);
+                } catch (ExecutionException | CancellationException e) {
+                    failures.add(new Failure(source, String.valueOf(e.getCause())));
+                    continue;
+                }
+
+                Target target = analysis.target();
+                if (target == null) {
+                    unmatched.add(source);
+                    progress.update(done.incrementAndGet(), total * 2, "Non classé : " + source.getFileName());
+                    continue;
+                }
+                String candidatureId = target.candidatureId();
+                Path dossier = target.dossier();
+
+                try {
+                    // Doublon détecté avant tout déplacement ; dans la même candidature il est toujours ignoré
+                    DocumentHashIndex.Location known = hashes != null && analysis.hash() != null
+                            ? hashes.find(analysis.hash()) : null;
+                    Path existing = known != null ? hashes.resolve(known) : null;
+                    DuplicateAction action = existing == null ? DuplicateAction.IMPORT
+                            : known.candidatureId().equals(candidatureId) ? DuplicateAction.SKIP
+                            : progress.onDuplicate(source, existing);
+                    if (existing != null) duplicates.add(new Duplicate(source, existing, action));
+
+                    if (action != DuplicateAction.SKIP) {
+                        DocumentFile doc = action == DuplicateAction.LINK
+                                ? PdfImportService.lier(source, existing, dossier, analysis.date(), analysis.hash())
+                                : PdfImportService.importer(source, dossier, analysis.date(), analysis.hash());
+                        if (hashes != null && analysis.hash() != null) {
+                            hashes.add(candidatureId, doc.getFichier(), analysis.hash());
+                        }
+                        imported.add(new Imported(source, candidatureId, doc));
+                        if (analysis.date() == null) withoutDate.add(source);
+                    }
+                } catch (IOException e) {
+                    failures.add(new Failure(source, e.getMessage()));
+                }
+                progress.update(done.incrementAndGet(), total * 2,
+                        "Import " + (i + 1) + "/" + total + " : " + source.getFileName());
+            }
+            return new Report(imported, withoutDate, duplicates, unmatched, failures, false);
+        } finally {
+            analysers.shutdownNow();
+        }
+    }
+
+    // Empreinte lue en flux (tampon de 64 Ko), avant le déplacement : un déplacement sur le même
+    // volume n'est qu'un renommage, sans lecture du contenu
+    // PDF illisible : importé quand même, sans date (comme à l'import unitaire)
+    private Analysis analyse(Path source, Function<Path, Target> router) {
+        String hash = null;
+        if (hashes != null) {
+            try {
+                hash = ContentHasher.sha256(source);
+            } catch (IOException e) {
+                System.err.println("Empreinte impossible : " + source + " (" + e.getMessage() + ")");
+            }
+        }
+        LocalDateTime date = null;
+        try {
+            date = dates.extract(source);
+        } catch (IOException e) {
+            System.err.println("PDF illisible : " + source + " (" + e.getMessage() + ")");
+        }
+        Target target;
+        try {
+            target = router.apply(source);
+        } catch (RuntimeException e) {
+            System.err.println("Candidature non déterminée pour " + source + " (" + e.getMessage() + ")");
+            target = null;
+        }
+        return new Analysis(hash, date, target);
+    }
+}
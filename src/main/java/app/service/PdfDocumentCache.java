@@ -0,0 +1,235 @@
+package app.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Cache LRU des PDF ouverts (PDDocument + PDFRenderer), clé = chemin + date de modification.
+ * Borné en nombre de documents et en mémoire estimée. PDFBox n'étant pas thread-safe,
+ * chaque document est protégé par son propre verrou ; un document évincé pendant
+ * qu'il est utilisé n'est fermé qu'à la fin de cette utilisation.
+ */
+public class PdfDocumentCache implements AutoCloseable {
+
+    // Estimation grossière : le contenu du fichier est gardé en mémoire puis parsé
+    private static final long MEMORY_FACTOR = 3;
+
+    @FunctionalInterface
+    public interface DocumentAction<T> {
+        T apply(PDDocument document, PDFRenderer renderer) throws IOException;
+    }
+
+    private record Key(Path path, long lastModified, long size) {
+    }
+
+    private static final class Entry {
+        final PDDocument document;
+        final PDFRenderer renderer;
+        final long estimatedBytes;
+        final ReentrantLock lock = new ReentrantLock();
+        int users;
+        boolean evicted;
+
+        Entry(PDDocument document, long estimatedBytes) {
+            this.document = document;
+            this.renderer = new CancellablePdfRenderer(document);
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+
+    private final int maxDocuments;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private boolean closed;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PdfDocumentCache(int maxDocuments, long maxBytes) {
+        this.maxDocuments = maxDocuments;
+        this.maxBytes = maxBytes;
+    }
+
+    /* =========================
+       ACCÈS
+       ========================= */
+
+    // Exécute l'action sous le verrou du document, en l'ouvrant si nécessaire
+    public <T> T withDocument(Path path, DocumentAction<T> action) throws IOException {
+        Entry entry = acquire(path);
+        try {
+            // Interruptible : une requête de rendu annulée n'attend pas son tour
+            entry.lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            release(entry);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Accès au PDF annulé");
+        }
+        try {
+            return action.apply(entry.document, entry.renderer);
+        } finally {
+            entry.lock.unlock();
+            release(entry);
+        }
+    }
+
+    public int getPageCount(Path path) throws IOException {
+        return withDocument(path, (document, renderer) -> document.getNumberOfPages());
+    }
+
+    private Entry acquire(Path path) throws IOException {
+        Key key = keyOf(path);
+        synchronized (this) {
+            if (closed) throw new IOException("Cache des PDF fermé");
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                entry.users++;
+                return entry;
+            }
+        }
+
+        // Chargement hors du verrou global : les autres documents restent accessibles.
+        // Lu en mémoire pour ne garder aucun descripteur ouvert (renommage du dossier possible)
+        misses.incrementAndGet();
+        PDDocument document = PDDocument.load(Files.readAllBytes(path));
+        Entry loaded = new Entry(document, key.size() * MEMORY_FACTOR);
+
+        List<Entry> toClose = new ArrayList<>();
+        Entry result = null;
+        synchronized (this) {
+            if (closed) {
+                toClose.add(loaded);
+            } else {
+                result = entries.get(key);
+                if (result == null) {
+                    // Version précédente du même fichier : devenue inutile
+                    removeWhere(e -> e.path().equals(key.path()), toClose);
+                    entries.put(key, loaded);
+                    totalBytes += loaded.estimatedBytes;
+                    result = loaded;
+                } else {
+                    // Chargé entre-temps par un autre thread : on garde celui du cache
+                    toClose.add(loaded);
+                }
+                result.users++;
+                evictIfNeeded(toClose);
+            }
+        }
+        closeQuietly(toClose);
+        if (result == null) throw new IOException("Cache des PDF fermé");
+        return result;
+    }
+
+    private void release(Entry entry) {
+        boolean close;
+        synchronized (this) {
+            entry.users--;
+            close = entry.evicted && entry.users == 0;
+        }
+        if (close) closeQuietly(List.of(entry));
+    }
+
+    /* =========================
+       ÉVICTION
+       ========================= */
+
+    // Appelé sous le verrou : le plus ancien document utilisé part en premier
+    private void evictIfNeeded(List<Entry> toClose) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxDocuments || totalBytes > maxBytes) && entries.size() > 1 && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            it.remove();
+            detach(entry, toClose);
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void detach(Entry entry, List<Entry> toClose) {
+        totalBytes -= entry.estimatedBytes;
+        entry.evicted = true;
+        if (entry.users == 0) toClose.add(entry);
+    }
+
+    // Fichier supprimé ou remplacé : ses versions en cache sont retirées
+    public void invalidate(Path path) {
+        Path target = path.toAbsolutePath().normalize();
+        List<Entry> toClose = new ArrayList<>();
+        synchronized (this) {
+            removeWhere(key -> key.path().equals(target), toClose);
+        }
+        closeQuietly(toClose);
+    }
+
+    private void removeWhere(Predicate<Key> filter, List<Entry> toClose) {
+        entries.entrySet().removeIf(e -> {
+            if (!filter.test(e.getKey())) return false;
+            detach(e.getValue(), toClose);
+            return true;
+        });
+    }
+
+    @Override
+    public void close() {
+        List<Entry> toClose = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            entries.values().forEach(e -> detach(e, toClose));
+            entries.clear();
+        }
+        closeQuietly(toClose);
+    }
+
+    private static void closeQuietly(List<Entry> toClose) {
+        for (Entry entry : toClose) {
+            try {
+                entry.document.close();
+            } catch (IOException e) {
+                System.err.println("Fermeture du PDF impossible : " + e.getMessage());
+            }
+        }
+    }
+
+    private static Key keyOf(Path path) throws IOException {
+        Path absolute = path.toAbsolutePath().normalize();
+        return new Key(absolute, Files.getLastModifiedTime(absolute).toMillis(), Files.size(absolute));
+    }
+
+    /* =========================
+       STATISTIQUES
+       ========================= */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getEstimatedBytes() {
+        return totalBytes;
+    }
+}
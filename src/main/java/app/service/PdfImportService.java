@@ -11,21 +11,68 @@ import java.time.LocalDateTime;
 public class PdfImportService {
 
     public static DocumentFile importer(Path sourcePdf, Path dossierCandidature, LocalDateTime dateMail) throws IOException {
+        return importer(sourcePdf, dossierCandidature, dateMail, null);
+    }
+
+    // Empreinte connue (calculée avant le déplacement) : ni le cache ni les vignettes ne relisent le fichier
+    public static DocumentFile importer(Path sourcePdf, Path dossierCandidature, LocalDateTime dateMail,
+                                        String hash) throws IOException {
+
+        Path target = cible(sourcePdf, dossierCandidature);
+
+        // 3. MOVE réel
+        Files.move(sourcePdf, target, StandardCopyOption.REPLACE_EXISTING);
+
+        return document(target, dateMail, hash);
+    }
+
+    /**
+     * Doublon d'un document déjà stocké : lien physique vers le fichier existant au lieu
+     * d'une seconde copie, puis suppression de la source. Si le système de fichiers
+     * ne permet pas les liens, le fichier est déplacé comme un import normal.
+     */
+    public static DocumentFile lier(Path sourcePdf, Path existant, Path dossierCandidature, LocalDateTime dateMail,
+                                    String hash) throws IOException {
+
+        Path target = cible(sourcePdf, dossierCandidature);
+
+        try {
+            Files.createLink(target, existant);
+            Files.delete(sourcePdf);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.deleteIfExists(target);
+            Files.move(sourcePdf, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        return document(target, dateMail, hash);
+    }
+
+    private static Path cible(Path sourcePdf, Path dossierCandidature) throws IOException {
 
         Files.createDirectories(dossierCandidature);
 
         String fileName = sourcePdf.getFileName().toString();
         Path target = dossierCandidature.resolve(sourcePdf.getFileName());
 
-        // 2. Éviter écrasement silencieux
+        // 2. Éviter écrasement silencieux (y compris deux fichiers homonymes d'un même lot,
+        // importés dans la même milliseconde)
         if (Files.exists(target)) {
             String base = fileName.replaceFirst("(?i)\\.pdf$", "");
-            String newName = base + "_" + System.currentTimeMillis() + ".pdf";
-            target = dossierCandidature.resolve(newName);
+            String stamp = base + "_" + System.currentTimeMillis();
+            target = dossierCandidature.resolve(stamp + ".pdf");
+            for (int i = 2; Files.exists(target); i++) {
+                target = dossierCandidature.resolve(stamp + "_" + i + ".pdf");
+            }
         }
+        return target;
+    }
 
-        // 3. MOVE réel
-        Files.move(sourcePdf, target, StandardCopyOption.REPLACE_EXISTING);
+    private static DocumentFile document(Path target, LocalDateTime dateMail, String hash) throws IOException {
+
+        if (hash != null) ContentHasher.remember(target, hash);
+
+        // Vignettes préparées en arrière-plan pour la première consultation
+        ThumbnailCache.getDefault().generateInBackground(target, hash);
 
         // 4. DocumentFile cohérent
         DocumentFile doc = new DocumentFile();
@@ -0,0 +1,186 @@
+package app.service;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ordonnanceur des rendus de pages PDF : un petit pool borné (le rendu est limité
+ * par le CPU) et, par canal, seule la dernière requête compte. Une requête remplacée
+ * est retirée de la file si elle n'a pas commencé, sinon son thread est interrompu
+ * et le rendu s'arrête à l'opérateur suivant (voir CancellablePdfRenderer).
+ * Les requêtes de préchargement passent après les requêtes interactives en attente.
+ */
+public class PdfRenderScheduler implements AutoCloseable {
+
+    public enum Priority {
+        INTERACTIVE,
+        PREFETCH
+    }
+
+    // Tâche ordonnée par priorité puis par ordre d'arrivée
+    private static class RenderTask<T> extends FutureTask<T> implements Comparable<RenderTask<?>> {
+        final Priority priority;
+        final long sequence;
+
+        RenderTask(Callable<T> callable, Priority priority, long sequence) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(RenderTask<?> other) {
+            int cmp = priority.compareTo(other.priority);
+            return cmp != 0 ? cmp : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Map<String, FutureTask<?>> latest = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong cancelledBeforeStart = new AtomicLong();
+    private final AtomicLong aborted = new AtomicLong();
+
+    public PdfRenderScheduler(int maxInFlight) {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "pdf-render-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Un thread de rendu de moins que de cœurs, au plus 2 : l'interface reste fluide
+    public static int defaultParallelism() {
+        return Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /* =========================
+       SOUMISSION
+       ========================= */
+
+    public <T> CompletableFuture<T> submit(String channel, Callable<T> job) {
+        return submit(channel, Priority.INTERACTIVE, job);
+    }
+
+    // Remplace la requête en cours du canal ; le futur est annulé si la requête est remplacée
+    public <T> CompletableFuture<T> submit(String channel, Priority priority, Callable<T> job) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        RenderTask<T> task = new RenderTask<>(() -> {
+            inFlight.incrementAndGet();
+            try {
+                return job.call();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }, priority, submitted.incrementAndGet()) {
+            @Override
+            protected void done() {
+                latest.remove(channel, this);
+                complete(this, result);
+            }
+        };
+
+        FutureTask<?> previous = latest.put(channel, task);
+        if (previous != null) cancel(previous);
+
+        // Annulation par l'appelant : on propage à la tâche
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) cancel(task);
+        });
+
+        executor.execute(task);
+        return result;
+    }
+
+    public void cancel(String channel) {
+        FutureTask<?> task = latest.remove(channel);
+        if (task != null) cancel(task);
+    }
+
+    // Annule tous les canaux d'un groupe (ex. "prefetch:")
+    public void cancelAll(String channelPrefix) {
+        latest.keySet().stream()
+                .filter(channel -> channel.startsWith(channelPrefix))
+                .toList()
+                .forEach(this::cancel);
+    }
+
+    private void cancel(FutureTask<?> task) {
+        if (task.isDone()) return;
+        // Pas encore commencée : retirée de la file, aucun thread ne la verra
+        if (executor.remove(task)) {
+            cancelledBeforeStart.incrementAndGet();
+            task.cancel(false);
+        } else if (task.cancel(true)) {
+            aborted.incrementAndGet();
+        }
+    }
+
+    private <T> void complete(FutureTask<T> task, CompletableFuture<T> result) {
+        if (task.isCancelled()) {
+            result.cancel(false);
+            return;
+        }
+        try {
+            result.complete(task.get());
+            completed.incrementAndGet();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                result.cancel(false);
+            } else {
+                result.completeExceptionally(e.getCause());
+            }
+        } catch (InterruptedException | CancellationException e) {
+            result.cancel(false);
+        }
+    }
+
+    @Override
+    public void close() {
+        latest.values().forEach(this::cancel);
+        executor.shutdownNow();
+    }
+
+    /* =========================
+       STATISTIQUES
+       ========================= */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getCancelledBeforeStartCount() {
+        return cancelledBeforeStart.get();
+    }
+
+    public long getAbortedCount() {
+        return aborted.get();
+    }
+}
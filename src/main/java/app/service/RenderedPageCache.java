@@ -0,0 +1,118 @@
+package app.service;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache LRU des pages déjà rendues, clé = (chemin, date de modification, page, résolution).
+ * Borné par la taille totale des pixels plutôt que par un nombre d'images :
+ * une page A4 à 150 DPI pèse environ 8 Mo, une vignette quelques Ko.
+ */
+public class RenderedPageCache<I> {
+
+    public record PageKey(Path path, long lastModified, int page, float dpi) {
+    }
+
+    private record Entry<I>(I image, long bytes) {
+    }
+
+    private final long maxBytes;
+    private final ToLongFunction<I> sizeOf;
+    private final LinkedHashMap<PageKey, Entry<I>> images = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    // Prévenu de chaque image qui quitte le cache (recyclage des tampons)
+    private Consumer<I> onEvicted = image -> {
+    };
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public RenderedPageCache(long maxBytes, ToLongFunction<I> sizeOf) {
+        this.maxBytes = maxBytes;
+        this.sizeOf = sizeOf;
+    }
+
+    public synchronized void setOnEvicted(Consumer<I> onEvicted) {
+        this.onEvicted = onEvicted;
+    }
+
+    public synchronized I get(PageKey key) {
+        Entry<I> entry = images.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.image();
+    }
+
+    public synchronized void put(PageKey key, I image) {
+        long size = sizeOf.applyAsLong(image);
+        // Plus grosse que tout le budget : inutile de vider le cache pour elle
+        if (size > maxBytes) return;
+
+        Entry<I> previous = images.put(key, new Entry<>(image, size));
+        if (previous != null) {
+            totalBytes -= previous.bytes();
+            if (previous.image() != image) onEvicted.accept(previous.image());
+        }
+        totalBytes += size;
+
+        Iterator<Entry<I>> it = images.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry<I> evicted = it.next();
+            totalBytes -= evicted.bytes();
+            it.remove();
+            evictions++;
+            onEvicted.accept(evicted.image());
+        }
+    }
+
+    // Toutes les pages d'un fichier (supprimé ou remplacé)
+    public synchronized void invalidate(Path path) {
+        images.entrySet().removeIf(e -> {
+            if (!e.getKey().path().equals(path)) return false;
+            totalBytes -= e.getValue().bytes();
+            onEvicted.accept(e.getValue().image());
+            return true;
+        });
+    }
+
+    public synchronized void clear() {
+        images.clear();
+        totalBytes = 0;
+    }
+
+    /* =========================
+       STATISTIQUES
+       ========================= */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return images.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RenderedPageCache[" + images.size() + " pages, " + (totalBytes >> 20) + " Mo, hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+}
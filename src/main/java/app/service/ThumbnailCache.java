@@ -0,0 +1,192 @@
+package app.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vignettes des pages PDF conservées sur disque (.cache/thumbs/&lt;sha256&gt;/&lt;page&gt;.png).
+ * Clé = empreinte du contenu : un fichier renommé ou déplacé garde ses vignettes.
+ * Le fichier "pages" (nombre de pages) est écrit en dernier : sa présence signifie
+ * que toutes les vignettes existent et peuvent être servies sans ouvrir le PDF.
+ */
+public class ThumbnailCache {
+
+    private static final float THUMBNAIL_WIDTH = 160;
+    private static final String PAGES_FILE = "pages";
+    private static final int IMPORT_QUEUE_CAPACITY = 32;
+
+    private static ThumbnailCache defaultCache;
+
+    private final Path dir;
+    // Document affiché : empreinte sur sa propre file, sans attendre les rendus en cours,
+    // puis rendu en priorité normale (la pré-génération de l'import reste en priorité minimale)
+    private final ExecutorService hasher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "thumbnail-hasher");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService generator = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "thumbnail-generator");
+        t.setDaemon(true);
+        t.setPriority(Thread.NORM_PRIORITY);
+        return t;
+    });
+    // Préparation à l'import : file bornée, les demandes en trop sont abandonnées
+    // (les vignettes seront alors faites à la première consultation)
+    private final ThreadPoolExecutor importGenerator = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(IMPORT_QUEUE_CAPACITY), r -> {
+        Thread t = new Thread(r, "thumbnail-import-generator");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+    // Une seule génération par contenu, même demandée plusieurs fois
+    private final Map<String, CompletableFuture<List<Path>>> pending = new ConcurrentHashMap<>();
+
+    public ThumbnailCache(Path dir) {
+        this.dir = dir;
+    }
+
+    public static synchronized ThumbnailCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new ThumbnailCache(FileSystemService.getRoot().resolve(".cache").resolve("thumbs"));
+        }
+        return defaultCache;
+    }
+
+    /* =========================
+       LECTURE
+       ========================= */
+
+    // Vignettes du PDF, générées en arrière-plan si elles n'existent pas encore
+    public CompletableFuture<List<Path>> thumbnails(Path pdf) {
+        return CompletableFuture.supplyAsync(() -> hashOf(pdf), hasher)
+                .thenCompose(hash -> {
+                    List<Path> existing = existing(hash);
+                    return existing != null
+                            ? CompletableFuture.completedFuture(existing)
+                            : generate(hash, pdf);
+                });
+    }
+
+    // Vignettes déjà sur disque, null si absentes ou incomplètes
+    public List<Path> existing(String hash) {
+        Path pagesFile = dir.resolve(hash).resolve(PAGES_FILE);
+        if (!Files.exists(pagesFile)) return null;
+        try {
+            int pages = Integer.parseInt(Files.readString(pagesFile).trim());
+            List<Path> files = new ArrayList<>(pages);
+            for (int page = 0; page < pages; page++) {
+                Path file = thumbnailFile(hash, page);
+                if (!Files.exists(file)) return null;
+                files.add(file);
+            }
+            return files;
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /* =========================
+       GÉNÉRATION
+       ========================= */
+
+    // Appelé à l'import, avec l'empreinte déjà calculée si elle est connue (null sinon) :
+    // rien n'est lu ici, le PDF est ouvert par la tâche, un seul à la fois
+    public void generateInBackground(Path pdf, String hash) {
+        importGenerator.execute(() -> {
+            // Déplacé entre-temps (dossier renommé) : vignettes faites à la première consultation
+            if (!Files.exists(pdf)) return;
+            try {
+                String key = hash != null ? hash : hashOf(pdf);
+                if (existing(key) != null) return;
+
+                CompletableFuture<List<Path>> own = new CompletableFuture<>();
+                if (pending.putIfAbsent(key, own) != null) return;
+                try {
+                    own.complete(render(key, pdf));
+                } catch (RuntimeException e) {
+                    own.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    pending.remove(key, own);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Vignettes non générées pour " + pdf + " : " + e.getMessage());
+            }
+        });
+    }
+
+    private CompletableFuture<List<Path>> generate(String hash, Path pdf) {
+        return pending.computeIfAbsent(hash, h -> CompletableFuture
+                .supplyAsync(() -> render(h, pdf), generator)
+                .whenComplete((files, error) -> pending.remove(h)));
+    }
+
+    private List<Path> render(String hash, Path pdf) {
+        List<Path> existing = existing(hash);
+        if (existing != null) return existing;
+
+        Path target = dir.resolve(hash);
+        try (PDDocument document = PDDocument.load(pdf.toFile())) {
+            Files.createDirectories(target);
+            PDFRenderer renderer = new PDFRenderer(document);
+            int pages = document.getNumberOfPages();
+            List<Path> files = new ArrayList<>(pages);
+
+            for (int page = 0; page < pages; page++) {
+                PDRectangle box = document.getPage(page).getCropBox();
+                float scale = THUMBNAIL_WIDTH / Math.max(1, box.getWidth());
+                BufferedImage image = renderer.renderImage(page, scale, ImageType.RGB);
+
+                Path file = thumbnailFile(hash, page);
+                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                ImageIO.write(image, "png", tmp.toFile());
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                files.add(file);
+            }
+
+            Files.writeString(target.resolve(PAGES_FILE), String.valueOf(pages));
+            return files;
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur lors de la génération des vignettes " + hash, e);
+        }
+    }
+
+    private Path thumbnailFile(String hash, int page) {
+        return dir.resolve(hash).resolve(page + ".png");
+    }
+
+    private static String hashOf(Path pdf) {
+        try {
+            return ContentHasher.sha256(pdf);
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur lors de la lecture de " + pdf, e);
+        }
+    }
+
+    public void close() {
+        hasher.shutdownNow();
+        generator.shutdownNow();
+        importGenerator.shutdownNow();
+    }
+}
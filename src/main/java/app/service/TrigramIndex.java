@@ -0,0 +1,198 @@
+package app.service;
+
+import app.model.Candidature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index inversé de trigrammes sur entreprise, poste et notes.
+ * Mis à jour incrémentalement (ajout, modification, suppression) ; une recherche
+ * intersecte les listes de trigrammes de la saisie puis vérifie les quelques candidats.
+ */
+public class TrigramIndex {
+
+    private static final char SEPARATOR = '\u0001';
+
+    // Liste triée d'identifiants internes (les ids sont attribués de façon croissante)
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) return;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+    }
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Candidature, Integer> docIds = new IdentityHashMap<>();
+    private final List<Candidature> docs = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();
+    private final BitSet alive = new BitSet();
+    private int deadCount;
+
+    /* =========================
+       MISE À JOUR
+       ========================= */
+    public void addAll(List<? extends Candidature> candidatures) {
+        candidatures.forEach(this::add);
+    }
+
+    public void add(Candidature c) {
+        if (docIds.containsKey(c)) {
+            update(c);
+            return;
+        }
+        int id = docs.size();
+        String text = normalizedText(c);
+
+        docs.add(c);
+        texts.add(text);
+        docIds.put(c, id);
+        alive.set(id);
+
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            long key = trigram(text, i);
+            if (key < 0) continue;
+            postings.computeIfAbsent(key, k -> new Postings()).add(id);
+        }
+    }
+
+    public void remove(Candidature c) {
+        Integer id = docIds.remove(c);
+        if (id == null) return;
+        alive.clear(id);
+        docs.set(id, null);
+        texts.set(id, null);
+        deadCount++;
+
+        // Trop d'entrées mortes dans les listes : on reconstruit
+        if (deadCount > 1024 && deadCount > docIds.size()) {
+            rebuild();
+        }
+    }
+
+    // Texte modifié : l'ancienne entrée devient morte, une nouvelle est ajoutée
+    public void update(Candidature c) {
+        Integer id = docIds.get(c);
+        if (id != null && normalizedText(c).equals(texts.get(id))) return;
+        remove(c);
+        add(c);
+    }
+
+    public void clear() {
+        postings.clear();
+        docIds.clear();
+        docs.clear();
+        texts.clear();
+        alive.clear();
+        deadCount = 0;
+    }
+
+    private void rebuild() {
+        List<Candidature> live = new ArrayList<>(docIds.keySet());
+        live.sort(Comparator.comparingInt(docIds::get));
+        clear();
+        addAll(live);
+    }
+
+    /* =========================
+       RECHERCHE
+       ========================= */
+
+    // Candidatures dont entreprise, poste ou notes contiennent la saisie (insensible à la casse)
+    public Set<Candidature> search(String query) {
+        Set<Candidature> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (query == null || query.isBlank()) {
+            result.addAll(docIds.keySet());
+            return result;
+        }
+        String q = query.toLowerCase(Locale.ROOT);
+
+        // Saisie trop courte pour un trigramme : parcours des textes déjà normalisés
+        if (q.length() < 3) {
+            for (int id = alive.nextSetBit(0); id >= 0; id = alive.nextSetBit(id + 1)) {
+                if (texts.get(id).contains(q)) result.add(docs.get(id));
+            }
+            return result;
+        }
+
+        List<Postings> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            Postings p = postings.get(trigram(q, i));
+            if (p == null) return result; // trigramme inconnu : aucun résultat
+            if (!lists.contains(p)) lists.add(p);
+        }
+        lists.sort(Comparator.comparingInt(p -> p.size));
+
+        // Intersection en partant de la liste la plus courte
+        int[] candidates = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int count = candidates.length;
+        for (int l = 1; l < lists.size() && count > 0; l++) {
+            count = intersect(candidates, count, lists.get(l));
+        }
+
+        // Vérification : les trigrammes présents ne garantissent pas la sous-chaîne complète
+        for (int i = 0; i < count; i++) {
+            int id = candidates[i];
+            if (alive.get(id) && texts.get(id).contains(q)) result.add(docs.get(id));
+        }
+        return result;
+    }
+
+    public int size() {
+        return docIds.size();
+    }
+
+    private static int intersect(int[] candidates, int count, Postings other) {
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            int id = candidates[i];
+            j = lowerBound(other.ids, j, other.size, id);
+            if (j < other.size && other.ids[j] == id) candidates[n++] = id;
+        }
+        return n;
+    }
+
+    // Recherche exponentielle puis dichotomique à partir de from
+    private static int lowerBound(int[] ids, int from, int size, int value) {
+        int step = 1;
+        int hi = from;
+        while (hi < size && ids[hi] < value) {
+            from = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        hi = Math.min(hi + 1, size);
+        int pos = Arrays.binarySearch(ids, from, hi, value);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    private static long trigram(String text, int i) {
+        char a = text.charAt(i);
+        char b = text.charAt(i + 1);
+        char c = text.charAt(i + 2);
+        if (a == SEPARATOR || b == SEPARATOR || c == SEPARATOR) return -1;
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static String normalizedText(Candidature c) {
+        return lower(c.getEntreprise()) + SEPARATOR + lower(c.getPoste()) + SEPARATOR + lower(c.getNotes());
+    }
+
+    private static String lower(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+}
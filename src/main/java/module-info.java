@@ -31,9 +31,12 @@ module app {
         requires org.apache.pdfbox;
         requires com.fasterxml.jackson.databind;
         requires com.fasterxml.jackson.datatype.jsr310;
+        requires java.sql;
+        requires com.h2database;
 
         // OUVERTURE POUR JACKSON (OBLIGATOIRE)
         opens app.model to com.fasterxml.jackson.databind;
+        opens app.repository to com.fasterxml.jackson.databind;
         opens app to javafx.fxml;
         exports app;
         }
\ No newline at end of file
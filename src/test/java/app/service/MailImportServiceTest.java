@@ -0,0 +1,223 @@
+package app.service;
+
+import app.model.Candidature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Import de boîtes mbox : découpage des messages, décodage des pièces jointes
+ * et reprise à la position enregistrée.
+ * Fixtures sous src/test/resources/mail (PDF d'origine et boîtes qui les contiennent encodés).
+ */
+class MailImportServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private Path dossier;
+    private MailImportService service;
+    private final List<MailImportService.Mail> mails = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Candidature candidature = new Candidature();
+        candidature.setId("c1");
+        dossier = dir.resolve("Acme");
+        candidature.setDossier(dossier);
+
+        DocumentHashIndex hashes = new DocumentHashIndex(dir.resolve("hashes.bin"),
+                id -> id.equals("c1") ? candidature : null);
+        service = new MailImportService(hashes, dir.resolve("checkpoints.properties"), dir.resolve("staging"));
+    }
+
+    /* =========================
+       DÉCOUPAGE ET DÉCODAGE
+       ========================= */
+
+    @Test
+    void splitsMboxOnFromLinesAndUnescapesMboxrd() throws IOException {
+        MailImportService.Report report = importMails(copy("candidatures.mbox"));
+
+        // « >From » dans le corps ne sépare pas les messages
+        assertEquals(3, report.messages());
+        assertEquals(2, mails.size());
+        String text = mails.get(0).text();
+        assertTrue(text.contains("\nFrom the team: merci"), text);
+        assertTrue(text.contains("\n>From nested quote"), text);
+        assertFalse(text.contains(">From the team"), text);
+    }
+
+    @Test
+    void decodesBase64AndQuotedPrintableAttachments() throws IOException {
+        MailImportService.Report report = importMails(copy("candidatures.mbox"));
+
+        assertTrue(report.failures().isEmpty(), report.failures().toString());
+        assertEquals(2, report.imported().size());
+        assertArrayEquals(fixture("lettre.pdf"), Files.readAllBytes(report.imported().get(0).document().getFichier()));
+        assertArrayEquals(fixture("cv.pdf"), Files.readAllBytes(report.imported().get(1).document().getFichier()));
+        assertTrue(Files.isDirectory(dir.resolve("staging")));
+        try (var staging = Files.list(dir.resolve("staging"))) {
+            assertEquals(0, staging.count());
+        }
+    }
+
+    @Test
+    void decodesEncodedWordsInHeadersAndFileNames() throws IOException {
+        MailImportService.Report report = importMails(copy("candidatures.mbox"));
+
+        MailImportService.Mail first = mails.get(0);
+        assertEquals("Candidature Société Acme", first.subject());
+        assertTrue(first.from().startsWith("Service Récrutement"), first.from());
+        // Heure ramenée au fuseau local
+        assertEquals(ZonedDateTime.of(2024, 3, 4, 10, 15, 0, 0, ZoneOffset.ofHours(1))
+                .withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime(), first.date());
+        assertEquals("Entretien Globex – CV", mails.get(1).subject());
+
+        // Accents retirés si le système de fichiers ne sait pas les représenter
+        String name = report.imported().get(0).document().getNom();
+        assertTrue(Set.of("lettre réponse.pdf", "lettre reponse.pdf").contains(name), name);
+    }
+
+    @Test
+    void readsNestedMultipartsAndQuotedPrintableText() throws IOException {
+        importMails(copy("candidatures.mbox"));
+
+        // Texte de multipart/alternative, pièce jointe dans un multipart/mixed imbriqué
+        String text = mails.get(1).text();
+        assertTrue(text.contains("Merci pour votre intérêt, voici le CV reçu."), text);
+        assertFalse(text.contains("Preambule"), text);
+        assertFalse(text.contains("Epilogue"), text);
+    }
+
+    /* =========================
+       REPRISE
+       ========================= */
+
+    @Test
+    void recordsPositionOnlyOnCommit() throws IOException {
+        Path mbox = copy("candidatures.mbox");
+        MailImportService.Report report = importMails(mbox);
+
+        assertEquals(0, service.checkpoint(mbox));
+        service.commit(report);
+        assertEquals(Files.size(mbox), service.checkpoint(mbox));
+
+        // Relu par une nouvelle instance (fichier de positions sur disque)
+        MailImportService reopened = new MailImportService(null, dir.resolve("checkpoints.properties"),
+                dir.resolve("staging"));
+        assertEquals(Files.size(mbox), reopened.checkpoint(mbox));
+    }
+
+    @Test
+    void readsOnlyNewMessagesOfAGrownMailbox() throws IOException {
+        Path mbox = copy("candidatures.mbox");
+        service.commit(importMails(mbox));
+
+        Files.write(mbox, fixture("suite.mbox"), StandardOpenOption.APPEND);
+        mails.clear();
+        MailImportService.Report report = importMails(mbox);
+
+        assertEquals(1, report.messages());
+        assertEquals(1, report.imported().size());
+        assertEquals("Relance Globex", mails.get(0).subject());
+        assertArrayEquals(fixture("relance.pdf"), Files.readAllBytes(report.imported().get(0).document().getFichier()));
+        assertEquals(Files.size(mbox), report.positions().get(mbox));
+    }
+
+    @Test
+    void rereadsATruncatedMailboxAndSkipsStoredAttachments() throws IOException {
+        Path mbox = copy("candidatures.mbox");
+        Files.write(mbox, fixture("suite.mbox"), StandardOpenOption.APPEND);
+        service.commit(importMails(mbox));
+
+        // Boîte raccourcie (messages supprimés) : position au-delà de la fin, tout est relu
+        Files.write(mbox, fixture("candidatures.mbox"));
+        MailImportService.Report report = importMails(mbox);
+
+        assertEquals(3, report.messages());
+        assertTrue(report.imported().isEmpty());
+        assertEquals(2, report.skipped().size());
+        report.skipped().forEach(s -> assertTrue(s.reason().startsWith("déjà stocké"), s.reason()));
+        assertEquals(Files.size(mbox), report.positions().get(mbox));
+    }
+
+    @Test
+    void skipsAttachmentsAlreadyStoredInTheSameRun() throws IOException {
+        Path mbox = copy("candidatures.mbox");
+        Files.write(mbox, fixture("candidatures.mbox"), StandardOpenOption.APPEND);
+
+        MailImportService.Report report = importMails(mbox);
+
+        assertEquals(6, report.messages());
+        assertEquals(2, report.imported().size());
+        assertEquals(2, report.skipped().size());
+        assertEquals(2, report.hashes().size());
+    }
+
+    @Test
+    void keepsPositionBeforeAMessageWhoseAttachmentFailed() throws IOException {
+        Path mbox = copy("candidatures.mbox");
+        MailImportService.Report report = service.importAll(List.of(mbox), (mail, pdf) -> {
+            if (mail.subject().startsWith("Entretien")) throw new IllegalStateException("routage impossible");
+            return new PdfBatchImportService.Target("c1", dossier);
+        }, (done, total, message) -> {
+        });
+        service.commit(report);
+
+        assertEquals(1, report.failures().size());
+        assertEquals(1, report.imported().size());
+        long secondMessage = new String(fixture("candidatures.mbox"), StandardCharsets.ISO_8859_1)
+                .indexOf("From rh@globex.example");
+        assertEquals(secondMessage, service.checkpoint(mbox));
+
+        // Reprise : le message en échec est relu, le premier non
+        report = importMails(mbox);
+        assertEquals(2, report.messages());
+        assertEquals(1, report.imported().size());
+        assertArrayEquals(fixture("cv.pdf"), Files.readAllBytes(report.imported().get(0).document().getFichier()));
+    }
+
+    /* =========================
+       OUTILS
+       ========================= */
+
+    private MailImportService.Report importMails(Path source) {
+        return service.importAll(List.of(source), (mail, pdf) -> {
+            mails.add(mail);
+            return new PdfBatchImportService.Target("c1", dossier);
+        }, (done, total, message) -> {
+        });
+    }
+
+    private Path copy(String name) throws IOException {
+        Path target = dir.resolve(name);
+        Files.write(target, fixture(name));
+        return target;
+    }
+
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = MailImportServiceTest.class.getResourceAsStream("/mail/" + name)) {
+            if (in == null) throw new IOException("Fixture absente : " + name);
+            return in.readAllBytes();
+        }
+    }
+}